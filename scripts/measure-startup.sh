@@ -0,0 +1,61 @@
+#!/usr/bin/env sh
+# Mide el arranque en frío y la latencia del primer lote de la imagen, con y sin el archivo AppCDS
+# y con hilos virtuales opcionales. Requiere docker, curl, jq y un MongoDB con datos del periodo
+# (p. ej. cargados con el ThroughputHarness del perfil benchmark).
+#
+#   docker build -t fps-bus-ms-process-kpi .
+#   MONGO_URI=mongodb://host.docker.internal:27017/FapeConnect scripts/measure-startup.sh
+#
+# Por ejecución imprime: modo, ms hasta health UP, "Started ... in" de Spring Boot, ms del job de
+# /kpi/process y el máximo de kpi.batch.duration (primer lote, en segundos).
+set -eu
+
+IMAGE=${IMAGE:-fps-bus-ms-process-kpi}
+MONGO_URI=${MONGO_URI:?MONGO_URI es obligatorio}
+START_DATE=${START_DATE:-$(date -d yesterday +%F)}
+END_DATE=${END_DATE:-$START_DATE}
+RUNS=${RUNS:-3}
+PORT=${PORT:-18080}
+
+now_ms() {
+    date +%s%3N
+}
+
+measure() {
+    mode=$1
+    shift
+    container=$(docker run -d --rm -p "$PORT:8080" \
+        -e SPRING_DATA_MONGODB_URI="$MONGO_URI" \
+        -e KPI_SCHEDULING_ENABLED=false \
+        -e KPI_STREAMING_ENABLED=false \
+        "$@" "$IMAGE")
+    started=$(now_ms)
+
+    until curl -sf "http://localhost:$PORT/actuator/health" >/dev/null 2>&1; do
+        sleep 0.1
+    done
+    ready=$(now_ms)
+    boot=$(docker logs "$container" 2>&1 | sed -n 's/.*Started KpiApplication in \([0-9.]*\) seconds.*/\1/p' | head -1)
+
+    job=$(curl -sf -X POST "http://localhost:$PORT/kpi/process?startDate=$START_DATE&endDate=$END_DATE" | jq -r .id)
+    submitted=$(now_ms)
+    status=PENDING
+    while [ "$status" = PENDING ] || [ "$status" = RUNNING ]; do
+        sleep 0.2
+        status=$(curl -sf "http://localhost:$PORT/kpi/jobs/$job" | jq -r .status)
+    done
+    finished=$(now_ms)
+    batch=$(curl -sf "http://localhost:$PORT/actuator/metrics/kpi.batch.duration" \
+        | jq -r '.measurements[] | select(.statistic == "MAX") | .value')
+
+    docker stop "$container" >/dev/null
+    echo "$mode ready_ms=$((ready - started)) boot_s=$boot job_ms=$((finished - submitted)) job_status=$status first_batch_max_s=$batch"
+}
+
+i=1
+while [ "$i" -le "$RUNS" ]; do
+    measure sin-appcds -e JAVA_TOOL_OPTIONS=-Xshare:off
+    measure appcds
+    measure appcds-hilos-virtuales -e SPRING_THREADS_VIRTUAL_ENABLED=true
+    i=$((i + 1))
+done
@@ -0,0 +1,68 @@
+package pe.farmaciasperuanas.digital.process.kpi.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.CampaignMetadata;
+import reactor.core.publisher.Mono;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Copia del parseo de utm_campaign anterior a la optimización (regex por URL, split por valor, un
+ * CampaignMetadata nuevo por llamada y resultado en Mono), como referencia de UtmParserBenchmark.
+ */
+@Slf4j
+class BaselineUtmParser {
+
+    private static final Pattern UTM_CAMPAIGN_PATTERN = Pattern.compile("utm_campaign=([^&?]+)");
+
+    Mono<CampaignMetadata> extractMetadataFromUrl(String url) {
+        if (url == null || url.isEmpty()) {
+            return Mono.empty();
+        }
+
+        try {
+            Matcher matcher = UTM_CAMPAIGN_PATTERN.matcher(url);
+            if (matcher.find()) {
+                String utmCampaign = matcher.group(1);
+                return extractMetadataFromUtmCampaign(utmCampaign);
+            }
+
+            log.warn("No se encontró parámetro utm_campaign en la URL: {}", url);
+            return Mono.empty();
+        } catch (Exception e) {
+            log.error("Error al extraer metadatos de la URL: {}", url, e);
+            return Mono.empty();
+        }
+    }
+
+    Mono<CampaignMetadata> extractMetadataFromUtmCampaign(String utmCampaign) {
+        if (utmCampaign == null || utmCampaign.isEmpty()) {
+            return Mono.empty();
+        }
+
+        try {
+            String[] parts = utmCampaign.split("_");
+            if (parts.length < 3) {
+                log.warn("Formato de utm_campaign no válido: {}", utmCampaign);
+                return Mono.empty();
+            }
+
+            String format = parts[parts.length - 1];
+            String campaignId = parts[0];
+            String campaignSubId = campaignId + format;
+
+            return Mono.just(CampaignMetadata.builder()
+                    .campaignId(campaignId)
+                    .campaignSubId(campaignSubId)
+                    .format(format)
+                    .medium("medio propios")
+                    .platform("Salesforce")
+                    .providerId("")
+                    .build());
+        } catch (Exception e) {
+            log.error("Error al extraer metadatos de utm_campaign: {}", utmCampaign, e);
+            return Mono.empty();
+        }
+    }
+}
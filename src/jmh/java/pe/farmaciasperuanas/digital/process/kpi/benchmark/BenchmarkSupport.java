@@ -0,0 +1,56 @@
+package pe.farmaciasperuanas.digital.process.kpi.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.util.ReflectionUtils;
+import pe.farmaciasperuanas.digital.process.kpi.application.service.UtmParserServiceImpl;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Arma los servicios fuera de Spring: asigna los valores de @Value, ejecuta @PostConstruct y
+ * reemplaza los puertos de repositorio por stubs en memoria.
+ */
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    static UtmParserServiceImpl utmParserService(long utmCacheSize) {
+        UtmParserServiceImpl service = new UtmParserServiceImpl(null, new SimpleMeterRegistry());
+        setField(service, "sendCampaignCacheMaxSize", 100_000L);
+        setField(service, "sendCampaignCacheTtlSeconds", 3600L);
+        setField(service, "utmCampaignCacheMaxSize", utmCacheSize);
+        invoke(service, "initCaches");
+        return service;
+    }
+
+    /**
+     * Implementa un puerto con las respuestas indicadas por nombre de método; el resto falla.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T stub(Class<T> port, Map<String, Function<Object[], Object>> answers) {
+        return (T) Proxy.newProxyInstance(port.getClassLoader(), new Class<?>[]{port}, (proxy, method, args) -> {
+            Function<Object[], Object> answer = answers.get(method.getName());
+            if (answer == null) {
+                throw new UnsupportedOperationException(port.getSimpleName() + "." + method.getName());
+            }
+            return answer.apply(args);
+        });
+    }
+
+    static void setField(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+
+    static void invoke(Object target, String name) {
+        Method method = ReflectionUtils.findMethod(target.getClass(), name);
+        ReflectionUtils.makeAccessible(method);
+        ReflectionUtils.invokeMethod(method, target);
+    }
+}
@@ -0,0 +1,140 @@
+package pe.farmaciasperuanas.digital.process.kpi.benchmark;
+
+import com.mongodb.MongoClientSettings;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Update;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Kpi;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.KpiPeriod;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construcción de los cinco KPIs de Mailing Padre por sendID y su codificación a BSON, tanto
+ * como documento completo como con el $set/$setOnInsert que arma KpiRepositoryImpl.bulkUpsert.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KpiDocumentBenchmark {
+
+    private static final int SEND_IDS = 1_000;
+    private static final int KPIS = SEND_IDS * 5;
+    private static final String PERIOD = "2025-01-25";
+
+    private MappingMongoConverter converter;
+    private DocumentCodec codec;
+    private List<Kpi> kpis;
+
+    @Setup
+    public void setUp() {
+        // Mismas conversiones por defecto que el converter de Spring Boot (java.time como tipo simple)
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        codec = new DocumentCodec(MongoClientSettings.getDefaultCodecRegistry());
+        kpis = buildKpis();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KPIS)
+    public List<Kpi> build() {
+        return buildKpis();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KPIS)
+    public void encodeDocument(Blackhole blackhole) {
+        for (Kpi kpi : kpis) {
+            Document document = new Document();
+            converter.write(kpi, document);
+            blackhole.consume(new RawBsonDocument(document, codec));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KPIS)
+    public void encodeUpsert(Blackhole blackhole) {
+        LocalDateTime now = LocalDateTime.now();
+        for (Kpi kpi : kpis) {
+            Update update = new Update()
+                    .set("providerId", kpi.getProviderId())
+                    .set("kpiDescription", kpi.getKpiDescription())
+                    .set("type", kpi.getType())
+                    .set("value", kpi.getValue())
+                    .set("numerator", kpi.getNumerator())
+                    .set("denominator", kpi.getDenominator())
+                    .set("status", kpi.getStatus())
+                    .set("updatedDate", now)
+                    .set("granularity", KpiPeriod.granularityOf(kpi.getPeriod()))
+                    .setOnInsert("createdDate", now)
+                    .setOnInsert("createdUser", kpi.getCreatedUser());
+            Document mapped = (Document) converter.convertToMongoType(update.getUpdateObject());
+            blackhole.consume(new RawBsonDocument(mapped, codec));
+        }
+    }
+
+    // Mismos campos que MediosMailingServiceImpl.processMailingPadreKpis
+    private List<Kpi> buildKpis() {
+        List<Kpi> result = new ArrayList<>(KPIS);
+        for (int i = 0; i < SEND_IDS; i++) {
+            String campaignId = String.valueOf(SyntheticEvents.FIRST_SEND_ID + i);
+            String providerId = "P" + (i % 40);
+            long opens = 800 + i;
+            long sents = 10_000 + i;
+            long clicks = 120 + i;
+            result.add(kpi(campaignId, providerId, "MP-I", "Impresiones (Aperturas)", "Cantidad", opens, null, null));
+            result.add(kpi(campaignId, providerId, "MP-A", "Alcance (Envíos)", "Cantidad", sents, null, null));
+            result.add(kpi(campaignId, providerId, "MP-C", "Clics", "Cantidad", clicks, null, null));
+            result.add(kpi(campaignId, providerId, "MP-OR", "Open Rate (OR)", "Porcentaje",
+                    (double) opens / sents * 100, (double) opens, (double) sents));
+            result.add(kpi(campaignId, providerId, "MP-CR", "CTR (CR)", "Porcentaje",
+                    (double) clicks / opens * 100, (double) clicks, (double) opens));
+        }
+        return result;
+    }
+
+    private static Kpi kpi(String campaignId, String providerId, String kpiId, String description, String type,
+                           double value, Double numerator, Double denominator) {
+        return Kpi.builder()
+                .campaignId(campaignId)
+                .campaignSubId(campaignId)
+                .providerId(providerId)
+                .kpiId(kpiId)
+                .kpiDescription(description)
+                .type(type)
+                .value(value)
+                .numerator(numerator)
+                .denominator(denominator)
+                .status("A")
+                .period(PERIOD)
+                .build();
+    }
+}
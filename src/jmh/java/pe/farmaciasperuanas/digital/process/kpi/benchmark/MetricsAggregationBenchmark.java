@@ -0,0 +1,71 @@
+package pe.farmaciasperuanas.digital.process.kpi.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pe.farmaciasperuanas.digital.process.kpi.application.service.KpiReadCache;
+import pe.farmaciasperuanas.digital.process.kpi.application.service.MetricsServiceImpl;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Metrics;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.KpiRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.MetricsRepository;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tramo en la aplicación de MetricsServiceImpl.calculateGeneralMetrics: la agregación por proveedor
+ * ya llega resuelta por MongoDB ($group), así que se mide el mapeo, la inversión por marca, el
+ * registro de proveedores para invalidar la caché y el consumo del bulk, con repositorios en memoria.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsAggregationBenchmark {
+
+    @Param({"100", "10000"})
+    private int providers;
+
+    private MetricsServiceImpl metricsService;
+
+    @Setup
+    public void setUp() {
+        List<Metrics> aggregated = new ArrayList<>(providers);
+        for (int i = 0; i < providers; i++) {
+            aggregated.add(Metrics.builder()
+                    .providerId("P" + i)
+                    .totalActiveCampaigns(i % 25)
+                    .totalInvestmentPeriod(1_000.0 * (i % 50))
+                    .ventaTotal(5_000.0 * (i % 70))
+                    .build());
+        }
+
+        KpiRepository kpiRepository = BenchmarkSupport.stub(KpiRepository.class, Map.of(
+                "refreshCampaignTotals", args -> Flux.empty(),
+                "aggregateMetricsFromCampaignTotals", args -> Flux.fromIterable(aggregated)));
+        MetricsRepository metricsRepository = BenchmarkSupport.stub(MetricsRepository.class, Map.of(
+                "upsertAll", args -> ((Flux<?>) args[0]).count()));
+
+        KpiReadCache kpiReadCache = new KpiReadCache(kpiRepository, new SimpleMeterRegistry(), 10_000, 300);
+        metricsService = new MetricsServiceImpl(kpiRepository, metricsRepository, kpiReadCache);
+    }
+
+    @Benchmark
+    public void calculateGeneralMetrics() {
+        metricsService.calculateGeneralMetrics().block();
+    }
+}
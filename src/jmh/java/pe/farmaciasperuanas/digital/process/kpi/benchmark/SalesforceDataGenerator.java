@@ -0,0 +1,192 @@
+package pe.farmaciasperuanas.digital.process.kpi.benchmark;
+
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import lombok.Builder;
+import lombok.Value;
+import org.bson.Document;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Llena las colecciones de Salesforce con volúmenes y sesgo realistas (sendID y campañas Zipf,
+ * utm_campaign con los formatos reales, mezcla app/web en push) o reproduce un extracto anonimizado.
+ */
+public class SalesforceDataGenerator {
+
+    public static final String OPENS = "salesforce_opens";
+    public static final String CLICKS = "salesforce_clicks";
+    public static final String SENTS = "salesforce_sents";
+    public static final String PUSH = "salesforce_push";
+    public static final String SEND_CAMPAIGNS = "salesforce_send_campaigns";
+    public static final List<String> EVENT_COLLECTIONS = List.of(OPENS, CLICKS, SENTS, PUSH);
+
+    private static final int INSERT_BATCH = 5_000;
+    private static final int PROVIDERS = 40;
+    private static final String[] PUSH_BRANDS = {"wellness", "dermo", "bebe", "nutricion", "belleza"};
+    private static final DateTimeFormatter FECHA_PROCESO = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    private final MongoDatabase database;
+
+    public SalesforceDataGenerator(MongoDatabase database) {
+        this.database = database;
+    }
+
+    /**
+     * Volumen por día; aperturas y clics se derivan de los envíos con las tasas indicadas.
+     */
+    @Value
+    @Builder
+    public static class Scale {
+        @Builder.Default int sentsPerDay = 100_000;
+        @Builder.Default double openRate = 0.2;
+        @Builder.Default double clickRate = 0.03;
+        @Builder.Default int pushPerDay = 50_000;
+        @Builder.Default double webPushShare = 0.3; // El resto es app, salvo otherPushShare sin canal
+        @Builder.Default double otherPushShare = 0.05;
+        @Builder.Default double pushOpenRate = 0.08;
+        @Builder.Default int sendIds = 2_000;
+        @Builder.Default int campaigns = 300;
+    }
+
+    /**
+     * Genera los eventos de cada día del rango y el catálogo de sendID; retorna los eventos insertados.
+     */
+    public Mono<Long> generate(Scale scale, LocalDate startDate, int days, long seed) {
+        return insert(SEND_CAMPAIGNS, Flux.range(0, scale.getSendIds())
+                        .map(rank -> new Document("sendID", SyntheticEvents.FIRST_SEND_ID + rank)
+                                .append("campaignId", campaignId(rank % scale.getCampaigns(), startDate))
+                                .append("providerId", "P" + (rank % scale.getCampaigns() % PROVIDERS))))
+                .then(Flux.range(0, days)
+                        .map(startDate::plusDays)
+                        .concatMap(day -> generateDay(scale, day, seed + day.toEpochDay()))
+                        .reduce(0L, Long::sum));
+    }
+
+    private Mono<Long> generateDay(Scale scale, LocalDate day, long seed) {
+        int sents = scale.getSentsPerDay();
+        int opens = (int) (sents * scale.getOpenRate());
+        int clicks = (int) (sents * scale.getClickRate());
+
+        return Flux.concat(
+                        insert(SENTS, emailEvents(scale, day, sents, seed)),
+                        insert(OPENS, emailEvents(scale, day, opens, seed + 1)),
+                        insert(CLICKS, clickEvents(scale, day, clicks, seed + 2)),
+                        insert(PUSH, pushEvents(scale, day, seed + 3)))
+                .reduce(0L, Long::sum);
+    }
+
+    // Los campos de relleno tienen el tamaño de los reales, para que la proyección de los adaptadores se note
+    private Flux<Document> emailEvents(Scale scale, LocalDate day, int count, long seed) {
+        return Flux.defer(() -> {
+            ZipfSampler sendIds = new ZipfSampler(scale.getSendIds(), 1.1, seed);
+            Random random = new Random(seed);
+            return Flux.range(0, count).map(i -> emailEvent(day, SyntheticEvents.FIRST_SEND_ID + sendIds.next(), i, random));
+        });
+    }
+
+    private Flux<Document> clickEvents(Scale scale, LocalDate day, int count, long seed) {
+        return Flux.defer(() -> {
+            ZipfSampler sendIds = new ZipfSampler(scale.getSendIds(), 1.1, seed);
+            Random random = new Random(seed);
+            return Flux.range(0, count).map(i -> {
+                int rank = sendIds.next();
+                return emailEvent(day, SyntheticEvents.FIRST_SEND_ID + rank, i, random)
+                        .append("url", SyntheticEvents.clickUrl(rank % scale.getCampaigns(), day, random.nextInt(4)))
+                        .append("urlID", (long) rank)
+                        .append("alias", "banner_" + random.nextInt(5));
+            });
+        });
+    }
+
+    private Flux<Document> pushEvents(Scale scale, LocalDate day, long seed) {
+        return Flux.defer(() -> {
+            ZipfSampler campaigns = new ZipfSampler(scale.getCampaigns(), 1.1, seed);
+            Random random = new Random(seed);
+            String fechaProceso = day.format(FECHA_PROCESO);
+            return Flux.range(0, scale.getPushPerDay()).map(i -> {
+                int campaign = campaigns.next();
+                double channel = random.nextDouble();
+                boolean other = channel < scale.getOtherPushShare();
+                boolean web = !other && channel < scale.getOtherPushShare() + scale.getWebPushShare();
+
+                Document push = new Document("FechaProceso", fechaProceso)
+                        .append("MessageName", pushMessageName(campaign, day, web ? "web" : other ? "sms" : "app"))
+                        .append("MessageOpened", random.nextDouble() < scale.getPushOpenRate())
+                        .append("ContactKey", "anon-" + random.nextInt(1_000_000))
+                        .append("DeviceId", Long.toHexString(random.nextLong()))
+                        .append("Platform", web ? "Web" : random.nextBoolean() ? "Android" : "iOS")
+                        .append("Status", "Success");
+                if (!web && !other) {
+                    push.append("AppName", "MiFarma");
+                }
+                return push;
+            });
+        });
+    }
+
+    /**
+     * Reproduce un extracto exportado con mongoexport: un archivo por colección
+     * ({@code salesforce_opens.json}, ...) con un documento en JSON extendido por línea.
+     */
+    public Mono<Long> replay(Path directory) {
+        return Flux.fromIterable(List.of(SEND_CAMPAIGNS, OPENS, CLICKS, SENTS, PUSH))
+                .filter(collection -> Files.exists(directory.resolve(collection + ".json")))
+                .concatMap(collection -> insert(collection, Flux.using(
+                                () -> Files.lines(directory.resolve(collection + ".json")),
+                                Flux::fromStream,
+                                lines -> lines.close())
+                        .filter(line -> !line.isBlank())
+                        .map(Document::parse))
+                        .map(count -> SEND_CAMPAIGNS.equals(collection) ? 0L : count))
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<Long> insert(String collection, Flux<Document> documents) {
+        return documents
+                .buffer(INSERT_BATCH)
+                .flatMapSequential(batch -> Mono.from(database.getCollection(collection)
+                                .insertMany(batch, new InsertManyOptions().ordered(false)))
+                        .map(result -> (long) result.getInsertedIds().size()), 4)
+                .reduce(0L, Long::sum);
+    }
+
+    private static Document emailEvent(LocalDate day, int sendId, int index, Random random) {
+        Date eventDate = Date.from(day.atStartOfDay(ZoneId.systemDefault())
+                .plusSeconds(random.nextInt(86_400)).toInstant());
+        int subscriber = random.nextInt(2_000_000);
+        return new Document("sendID", sendId)
+                .append("eventDate", eventDate)
+                .append("fechaProceso", Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant()))
+                .append("batchID", index % 50)
+                .append("listID", 1000 + sendId % 17)
+                .append("clientID", 510_000_000L + sendId % 3)
+                .append("subscriberID", (long) subscriber)
+                .append("subscriberKey", "anon-" + subscriber)
+                .append("emailAddress", "user" + subscriber + "@example.com")
+                .append("corporacion", sendId % 2 == 0 ? "MF" : "IKF")
+                .append("isUnique", random.nextBoolean())
+                .append("triggeredSendExternalKey", "TS_" + sendId);
+    }
+
+    private static String campaignId(int campaign, LocalDate day) {
+        String utmCampaign = SyntheticEvents.utmCampaign(campaign, day);
+        return utmCampaign.substring(0, utmCampaign.indexOf('_'));
+    }
+
+    // Formato real: 20250305_sfmc_cindi_do_mifarma_std_compra_pautareg_wellness_app_abierto_varios_omega3_push
+    private static String pushMessageName(int campaign, LocalDate day, String channel) {
+        return campaignId(campaign, day) + "_sfmc_cindi_do_mifarma_std_compra_pautareg_"
+                + PUSH_BRANDS[campaign % PUSH_BRANDS.length] + "_" + channel + "_abierto_varios_c"
+                + campaign + "_push";
+    }
+}
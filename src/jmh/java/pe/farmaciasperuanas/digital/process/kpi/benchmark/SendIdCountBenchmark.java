@@ -0,0 +1,72 @@
+package pe.farmaciasperuanas.digital.process.kpi.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.SalesforceEvent;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conteo de eventos por sendID sobre un flujo sintético con sesgo Zipf: groupBy/count de Reactor
+ * (forma original de MediosMailingServiceImpl) frente a un acumulador único con collect.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SendIdCountBenchmark {
+
+    @Param({"100000"})
+    private int events;
+
+    @Param({"50", "5000"})
+    private int sendIds;
+
+    private List<SalesforceEvent> opens;
+
+    @Setup
+    public void setUp() {
+        opens = SyntheticEvents.events(events, sendIds, LocalDate.of(2025, 1, 25), 42);
+    }
+
+    @Benchmark
+    public Map<Integer, Long> groupByCount() {
+        return Flux.fromIterable(opens)
+                .groupBy(SalesforceEvent::getSendID, Integer.MAX_VALUE)
+                .flatMap(group -> group.count().map(count -> Map.entry(group.key(), count)), Integer.MAX_VALUE)
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                .block();
+    }
+
+    @Benchmark
+    public Map<Integer, Long> collectMerge() {
+        return Flux.fromIterable(opens)
+                .collect(() -> new HashMap<Integer, Long>(), (counts, open) -> counts.merge(open.getSendID(), 1L, Long::sum))
+                .block();
+    }
+
+    @Benchmark
+    public Map<Integer, Long> loopMerge() {
+        Map<Integer, Long> counts = new HashMap<>();
+        for (SalesforceEvent open : opens) {
+            counts.merge(open.getSendID(), 1L, Long::sum);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,99 @@
+package pe.farmaciasperuanas.digital.process.kpi.benchmark;
+
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.SalesforceEvent;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Eventos de Salesforce sintéticos con la forma de los reales: sendID con sesgo Zipf y URLs
+ * con utm_campaign en las posiciones que aparecen en los clics de producción.
+ */
+public final class SyntheticEvents {
+
+    public static final int FIRST_SEND_ID = 100000;
+
+    private static final String[] FORMATS = {"MC", "MF", "MB"};
+    private static final String[] BRANDS = {"neutrogena", "lacteos", "bebe", "dermo", "vitaminas", "cuidadopersonal"};
+    private static final String[] CHANNELS = {"web", "app"};
+    private static final DateTimeFormatter CAMPAIGN_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private SyntheticEvents() {
+    }
+
+    /**
+     * utm_campaign con el formato real, p. ej.
+     * 20250125_do_cindi_mifarma_estandar_compra_abierto_web_pautaregular_farma_neutrogena_011592_MB
+     */
+    public static String utmCampaign(int campaign, LocalDate day) {
+        return day.minusDays(campaign % 30).format(CAMPAIGN_DATE)
+                + "_do_cindi_mifarma_estandar_compra_abierto_" + CHANNELS[campaign % CHANNELS.length]
+                + "_pautaregular_farma_" + BRANDS[campaign % BRANDS.length]
+                + "_" + String.format("%06d", campaign)
+                + "_" + FORMATS[campaign % FORMATS.length];
+    }
+
+    /**
+     * URL de clic con el utm_campaign al final, en medio de otros parámetros o antes de un
+     * segundo '?' agregado por redirecciones.
+     */
+    public static String clickUrl(int campaign, LocalDate day, int shape) {
+        String utm = utmCampaign(campaign, day);
+        switch (shape % 4) {
+            case 0:
+                return "https://www.mifarma.com.pe/producto/" + campaign + "?utm_source=salesforce&utm_medium=email&utm_campaign=" + utm;
+            case 1:
+                return "https://www.mifarma.com.pe/categoria/dermatologia?utm_campaign=" + utm + "&utm_source=salesforce&utm_medium=email&utm_content=banner";
+            case 2:
+                return "https://click.e.mifarma.com.pe/?qs=5f1d2c&utm_campaign=" + utm + "?redirect=https%3A%2F%2Fwww.mifarma.com.pe";
+            default:
+                return "https://www.inkafarma.pe/buscador?keyword=protector&sid=" + campaign
+                        + "&utm_source=salesforce&utm_medium=email&utm_term=" + BRANDS[campaign % BRANDS.length]
+                        + "&utm_campaign=" + utm + "&gclid=Cj0KCQiA";
+        }
+    }
+
+    /**
+     * Clics con sendID y campaña sesgados con Zipf; una misma campaña repite su utm_campaign.
+     */
+    public static List<SalesforceEvent> clicks(int count, int sendIds, int campaigns, LocalDate day, long seed) {
+        ZipfSampler sendIdSampler = new ZipfSampler(sendIds, 1.1, seed);
+        ZipfSampler campaignSampler = new ZipfSampler(campaigns, 1.1, seed + 1);
+        Random random = new Random(seed + 2);
+
+        List<SalesforceEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(SalesforceEvent.builder()
+                    .sendID(FIRST_SEND_ID + sendIdSampler.next())
+                    .url(clickUrl(campaignSampler.next(), day, random.nextInt(4)))
+                    .eventDate(eventDate(day, random))
+                    .build());
+        }
+        return events;
+    }
+
+    /**
+     * Aperturas o envíos (sin URL) con sendID sesgado con Zipf.
+     */
+    public static List<SalesforceEvent> events(int count, int sendIds, LocalDate day, long seed) {
+        ZipfSampler sendIdSampler = new ZipfSampler(sendIds, 1.1, seed);
+        Random random = new Random(seed + 2);
+
+        List<SalesforceEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(SalesforceEvent.builder()
+                    .sendID(FIRST_SEND_ID + sendIdSampler.next())
+                    .eventDate(eventDate(day, random))
+                    .build());
+        }
+        return events;
+    }
+
+    private static LocalDateTime eventDate(LocalDate day, Random random) {
+        return day.atStartOfDay().plusSeconds(random.nextInt(86400));
+    }
+}
@@ -0,0 +1,231 @@
+package pe.farmaciasperuanas.digital.process.kpi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import org.bson.Document;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import pe.farmaciasperuanas.digital.process.kpi.KpiApplication;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.KpiService;
+import pe.farmaciasperuanas.digital.process.kpi.infrastructure.config.database.MongoIndexBootstrapper;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mide KpiServiceImpl.processKpis de punta a punta contra un mongod local: por cada escala y
+ * cantidad de días borra la base, genera (o reproduce) los eventos de Salesforce, ejecuta el
+ * pipeline completo y reporta tiempo, eventos/s, operaciones de MongoDB, bytes leídos y heap máximo.
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec@harness -Dharness.args="--mongod=/usr/bin/mongod --scales=10000,100000 --days=1,7"
+ * </pre>
+ *
+ * Opciones: --mongo-uri (por defecto mongodb://localhost:27017), --mongod (binario a levantar en un
+ * dbpath temporal), --database, --scales (envíos por día), --days, --seed, --replay (directorio de
+ * mongoexport; requiere --start y --end) y --output (JSON, por defecto target/harness-result.json).
+ */
+public class ThroughputHarness {
+
+    private static final int MONGOD_PORT = 27217;
+    private static final List<String> OPCOUNTERS = List.of("insert", "query", "update", "delete", "getmore", "command");
+
+    private final Map<String, String> options;
+    private final String mongoUri;
+    private final String databaseName;
+
+    private ThroughputHarness(Map<String, String> options, String mongoUri) {
+        this.options = options;
+        this.mongoUri = mongoUri;
+        this.databaseName = options.getOrDefault("database", "kpi_harness");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+
+        Process mongod = options.containsKey("mongod") ? startMongod(options.get("mongod")) : null;
+        String mongoUri = mongod != null
+                ? "mongodb://127.0.0.1:" + MONGOD_PORT
+                : options.getOrDefault("mongo-uri", "mongodb://localhost:27017");
+        try {
+            new ThroughputHarness(options, mongoUri).run();
+        } finally {
+            if (mongod != null) {
+                mongod.destroy();
+            }
+        }
+    }
+
+    private void run() throws Exception {
+        List<Map<String, Object>> results = new ArrayList<>();
+
+        try (MongoClient client = MongoClients.create(mongoUri);
+             ConfigurableApplicationContext context = startApplication()) {
+            MongoDatabase database = client.getDatabase(databaseName);
+            SalesforceDataGenerator generator = new SalesforceDataGenerator(database);
+            KpiService kpiService = context.getBean(KpiService.class);
+            MongoIndexBootstrapper indexBootstrapper = context.getBean(MongoIndexBootstrapper.class);
+
+            System.out.printf("%-10s %5s %12s %10s %12s %10s %14s %10s%n",
+                    "escala", "días", "eventos", "tiempo(s)", "eventos/s", "ops Mongo", "bytes leídos", "heap(MB)");
+
+            if (options.containsKey("replay")) {
+                LocalDate start = LocalDate.parse(options.get("start"));
+                LocalDate end = LocalDate.parse(options.get("end"));
+                Mono<Long> load = generator.replay(Path.of(options.get("replay")));
+                results.add(measure(client, database, indexBootstrapper, kpiService, load, start, end, "replay"));
+            } else {
+                long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+                LocalDate start = LocalDate.now().minusDays(30);
+                for (int sentsPerDay : intList(options.getOrDefault("scales", "10000,100000"))) {
+                    for (int days : intList(options.getOrDefault("days", "1,7"))) {
+                        SalesforceDataGenerator.Scale scale = SalesforceDataGenerator.Scale.builder()
+                                .sentsPerDay(sentsPerDay)
+                                .pushPerDay(sentsPerDay / 2)
+                                .build();
+                        Mono<Long> load = generator.generate(scale, start, days, seed);
+                        results.add(measure(client, database, indexBootstrapper, kpiService, load,
+                                start, start.plusDays(days - 1), String.valueOf(sentsPerDay)));
+                    }
+                }
+            }
+        }
+
+        File output = new File(options.getOrDefault("output", "target/harness-result.json"));
+        output.getAbsoluteFile().getParentFile().mkdirs();
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output, results);
+        System.out.println("Resultados guardados en " + output.getPath());
+    }
+
+    private Map<String, Object> measure(MongoClient client, MongoDatabase database,
+                                        MongoIndexBootstrapper indexBootstrapper, KpiService kpiService,
+                                        Mono<Long> load, LocalDate start, LocalDate end, String scale) {
+        // Base limpia por corrida; los índices se recrean igual que al arrancar la aplicación
+        Mono.from(database.drop()).block();
+        indexBootstrapper.bootstrap().block();
+        long events = load.block();
+
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+        System.gc();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        Document before = serverStatus(client);
+        long startNanos = System.nanoTime();
+        kpiService.processKpis(start, end).block();
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+        Document after = serverStatus(client);
+
+        // Suma de los máximos por pool: cota superior del heap máximo ocupado durante la corrida
+        long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        Map<String, Long> operations = new LinkedHashMap<>();
+        for (String opcounter : OPCOUNTERS) {
+            operations.put(opcounter, counter(after, "opcounters", opcounter) - counter(before, "opcounters", opcounter));
+        }
+        long totalOperations = operations.values().stream().mapToLong(Long::longValue).sum();
+        long bytesRead = counter(after, "network", "bytesOut") - counter(before, "network", "bytesOut");
+        double seconds = elapsed.toMillis() / 1000.0;
+        double eventsPerSecond = seconds > 0 ? events / seconds : 0;
+        long days = end.toEpochDay() - start.toEpochDay() + 1;
+
+        System.out.printf("%-10s %5d %12d %10.2f %12.0f %10d %14d %10d%n",
+                scale, days, events, seconds, eventsPerSecond, totalOperations, bytesRead, peakHeap / (1024 * 1024));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("scale", scale);
+        result.put("startDate", start.toString());
+        result.put("endDate", end.toString());
+        result.put("days", days);
+        result.put("events", events);
+        result.put("wallTimeMillis", elapsed.toMillis());
+        result.put("eventsPerSecond", eventsPerSecond);
+        result.put("mongoOperations", operations);
+        result.put("bytesRead", bytesRead);
+        result.put("peakHeapBytes", peakHeap);
+        return result;
+    }
+
+    private ConfigurableApplicationContext startApplication() {
+        // Argumentos de línea de comandos: tienen precedencia sobre application.yml
+        return new SpringApplicationBuilder(KpiApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.data.mongodb.uri=" + mongoUri,
+                        "--spring.data.mongodb.database=" + databaseName,
+                        "--kpi.scheduling.enabled=false",
+                        "--kpi.streaming.enabled=false",
+                        "--kpi.indexes.fail-on-collscan=false",
+                        "--logging.level.pe.farmaciasperuanas=" + options.getOrDefault("log-level", "WARN"));
+    }
+
+    private static Document serverStatus(MongoClient client) {
+        return Mono.from(client.getDatabase("admin").runCommand(new Document("serverStatus", 1))).block();
+    }
+
+    private static long counter(Document status, String section, String name) {
+        Document values = status.get(section, Document.class);
+        Object value = values != null ? values.get(name) : null;
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    private static Process startMongod(String binary) throws Exception {
+        Path dbPath = Files.createTempDirectory("kpi-harness-mongod");
+        Process mongod = new ProcessBuilder(binary,
+                "--dbpath", dbPath.toString(),
+                "--port", String.valueOf(MONGOD_PORT),
+                "--bind_ip", "127.0.0.1",
+                "--quiet")
+                .redirectOutput(dbPath.resolve("mongod.log").toFile())
+                .redirectErrorStream(true)
+                .start();
+
+        // Espera a que acepte conexiones
+        Flux.interval(Duration.ofMillis(200))
+                .filter(tick -> {
+                    try (Socket socket = new Socket("127.0.0.1", MONGOD_PORT)) {
+                        return true;
+                    } catch (Exception e) {
+                        return false;
+                    }
+                })
+                .next()
+                .timeout(Duration.ofSeconds(30))
+                .block();
+        return mongod;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            } else if (!arg.isBlank()) {
+                throw new IllegalArgumentException("Opción no válida: " + arg);
+            }
+        }
+        return options;
+    }
+
+    private static List<Integer> intList(String values) {
+        return Arrays.stream(values.split(",")).map(String::trim).map(Integer::valueOf).toList();
+    }
+}
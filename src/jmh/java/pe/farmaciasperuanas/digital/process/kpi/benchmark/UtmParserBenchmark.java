@@ -0,0 +1,91 @@
+package pe.farmaciasperuanas.digital.process.kpi.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import pe.farmaciasperuanas.digital.process.kpi.application.service.UtmParserServiceImpl;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parseo de utm_campaign desde URLs de clics con las formas reales. Con pocas campañas
+ * predominan los aciertos del memo; con muchas, el escaneo de cada valor nuevo.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UtmParserBenchmark {
+
+    private static final int URLS = 10_000;
+
+    @Param({"100", "100000"})
+    private int campaigns;
+
+    private UtmParserServiceImpl utmParserService;
+    private final BaselineUtmParser baselineParser = new BaselineUtmParser();
+    private String[] urls;
+    private String[] utmCampaigns;
+
+    @Setup
+    public void setUp() {
+        utmParserService = BenchmarkSupport.utmParserService(10_000);
+
+        LocalDate day = LocalDate.of(2025, 1, 25);
+        Random random = new Random(42);
+        urls = new String[URLS];
+        utmCampaigns = new String[URLS];
+        for (int i = 0; i < URLS; i++) {
+            int campaign = random.nextInt(campaigns);
+            urls[i] = SyntheticEvents.clickUrl(campaign, day, i);
+            utmCampaigns[i] = SyntheticEvents.utmCampaign(campaign, day);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(URLS)
+    public void parseUrl(Blackhole blackhole) {
+        for (String url : urls) {
+            blackhole.consume(utmParserService.parseUrl(url));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(URLS)
+    public void parseUtmCampaign(Blackhole blackhole) {
+        for (String utmCampaign : utmCampaigns) {
+            blackhole.consume(utmParserService.parseUtmCampaign(utmCampaign));
+        }
+    }
+
+    // Referencia: la implementación anterior (regex, split y un Mono con metadatos nuevos por URL), sin memo
+    @Benchmark
+    @OperationsPerInvocation(URLS)
+    public void baselineParseUrl(Blackhole blackhole) {
+        for (String url : urls) {
+            baselineParser.extractMetadataFromUrl(url).subscribe(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(URLS)
+    public void baselineParseUtmCampaign(Blackhole blackhole) {
+        for (String utmCampaign : utmCampaigns) {
+            baselineParser.extractMetadataFromUtmCampaign(utmCampaign).subscribe(blackhole::consume);
+        }
+    }
+}
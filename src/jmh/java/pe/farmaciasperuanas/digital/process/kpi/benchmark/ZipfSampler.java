@@ -0,0 +1,33 @@
+package pe.farmaciasperuanas.digital.process.kpi.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Muestrea rangos 0..n-1 con distribución Zipf: pocos envíos concentran la mayoría de eventos,
+ * como ocurre con las campañas masivas frente a las segmentadas.
+ */
+public class ZipfSampler {
+
+    private final double[] cumulative;
+    private final Random random;
+
+    public ZipfSampler(int n, double exponent, long seed) {
+        this.cumulative = new double[n];
+        this.random = new Random(seed);
+
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < n; rank++) {
+            cumulative[rank] /= sum;
+        }
+    }
+
+    public int next() {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return index >= 0 ? index : Math.min(-index - 1, cumulative.length - 1);
+    }
+}
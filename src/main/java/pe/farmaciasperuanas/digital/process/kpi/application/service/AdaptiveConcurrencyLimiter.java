@@ -0,0 +1,177 @@
+package pe.farmaciasperuanas.digital.process.kpi.application.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limita la cantidad de lotes en paralelo con AIMD: sube el límite en uno por cada lote
+ * exitoso y lo reduce multiplicativamente cuando un lote falla o cuando la latencia o la
+ * tasa de errores de los comandos a MongoDB (promedios móviles) superan su objetivo.
+ */
+@Component
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double SMOOTHING = 0.2; // Peso de la última muestra en los promedios móviles
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyMillis;
+    private final double maxErrorRate;
+    private final double backoffRatio;
+
+    private final Queue<MonoSink<Permit>> waiters = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private volatile double latencyMillis;
+    private volatile double errorRate;
+
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry,
+                                      @Value("${kpi.batch.min-concurrency:1}") int minLimit,
+                                      @Value("${kpi.batch.max-concurrency:4}") int maxLimit,
+                                      @Value("${kpi.batch.target-latency:250}") long targetLatencyMillis,
+                                      @Value("${kpi.batch.max-error-rate:0.05}") double maxErrorRate,
+                                      @Value("${kpi.batch.backoff-ratio:0.5}") double backoffRatio) {
+        this.minLimit = minLimit;
+        this.maxLimit = Math.max(minLimit, maxLimit);
+        this.targetLatencyMillis = targetLatencyMillis;
+        this.maxErrorRate = maxErrorRate;
+        this.backoffRatio = backoffRatio;
+        this.limit = minLimit;
+
+        Gauge.builder("kpi.batch.concurrency.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Lotes de KPIs que pueden procesarse en paralelo")
+                .register(meterRegistry);
+        Gauge.builder("kpi.batch.in.flight", this, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("Lotes de KPIs en curso")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Espera hasta que haya cupo para un lote más
+     * @return Permiso que debe liberarse al terminar el lote
+     */
+    public Mono<Permit> acquire() {
+        return Mono.<Permit>create(sink -> {
+                    Permit permit = null;
+                    synchronized (this) {
+                        if (inFlight < (int) limit) {
+                            inFlight++;
+                            permit = new Permit();
+                        } else {
+                            waiters.add(sink);
+                            sink.onCancel(() -> {
+                                synchronized (this) {
+                                    waiters.remove(sink);
+                                }
+                            });
+                        }
+                    }
+                    if (permit != null) {
+                        sink.success(permit);
+                    }
+                })
+                // Si el suscriptor canceló antes de recibir el permiso, MonoSink lo descarta: se devuelve
+                // el cupo sin ajustar el límite para que inFlight no quede ocupado para siempre
+                .doOnDiscard(Permit.class, Permit::discard);
+    }
+
+    /**
+     * Registra la latencia de un comando exitoso a MongoDB
+     */
+    public void recordLatency(long elapsedMillis) {
+        latencyMillis = latencyMillis + SMOOTHING * (elapsedMillis - latencyMillis);
+        errorRate = errorRate * (1 - SMOOTHING);
+    }
+
+    /**
+     * Registra un comando fallido a MongoDB
+     */
+    public void recordError() {
+        errorRate = errorRate + SMOOTHING * (1 - errorRate);
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private void release(boolean success) {
+        List<MonoSink<Permit>> granted;
+        synchronized (this) {
+            inFlight--;
+            double previous = limit;
+            if (!success || errorRate > maxErrorRate || latencyMillis > targetLatencyMillis) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+            if ((int) previous != (int) limit) {
+                log.info("Límite de lotes en paralelo: {} -> {} (latencia MongoDB {} ms, errores {})",
+                        (int) previous, (int) limit, Math.round(latencyMillis), String.format("%.3f", errorRate));
+            }
+            granted = grantWaiters();
+        }
+        granted.forEach(sink -> sink.success(new Permit()));
+    }
+
+    // Devuelve el cupo de un permiso descartado o cancelado, sin contarlo como lote
+    private void releaseUnused() {
+        List<MonoSink<Permit>> granted;
+        synchronized (this) {
+            inFlight--;
+            granted = grantWaiters();
+        }
+        granted.forEach(sink -> sink.success(new Permit()));
+    }
+
+    // Debe llamarse con el lock tomado; los sinks se completan fuera del lock
+    private List<MonoSink<Permit>> grantWaiters() {
+        List<MonoSink<Permit>> granted = new ArrayList<>();
+        while (inFlight < (int) limit && !waiters.isEmpty()) {
+            inFlight++;
+            granted.add(waiters.poll());
+        }
+        return granted;
+    }
+
+    /**
+     * Cupo de un lote; liberarlo más de una vez no tiene efecto.
+     */
+    public class Permit {
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        public void release(boolean success) {
+            if (released.compareAndSet(false, true)) {
+                AdaptiveConcurrencyLimiter.this.release(success);
+            }
+        }
+
+        /**
+         * Devuelve el cupo sin ajustar el límite, para lotes cancelados que no dicen nada de la carga de MongoDB
+         */
+        public void discard() {
+            if (released.compareAndSet(false, true)) {
+                releaseUnused();
+            }
+        }
+    }
+}
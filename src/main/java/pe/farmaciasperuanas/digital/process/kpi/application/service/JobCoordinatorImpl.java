@@ -0,0 +1,123 @@
+package pe.farmaciasperuanas.digital.process.kpi.application.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.JobRun;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.KpiRunSummary;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.JobLockRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.JobRunRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.JobCoordinator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class JobCoordinatorImpl implements JobCoordinator {
+
+    private final JobLockRepository jobLockRepository;
+    private final JobRunRepository jobRunRepository;
+
+    // Jobs en curso en esta instancia
+    private final Set<String> runningJobs = ConcurrentHashMap.newKeySet();
+
+    private final String instanceId = System.getenv().getOrDefault("HOSTNAME", "kpi")
+            + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+    @Value("${kpi.jobs.lease:600000}")
+    private long leaseMillis; // Duración del lease; se renueva cada tercio mientras el job sigue en curso
+
+    @Override
+    public Mono<JobRun> runExclusive(String jobName, Mono<KpiRunSummary> job) {
+        return Mono.defer(() -> {
+            if (!runningJobs.add(jobName)) {
+                log.info("Job {} aún en curso en esta instancia, se omite la ejecución", jobName);
+                return Mono.empty();
+            }
+
+            Duration lease = Duration.ofMillis(leaseMillis);
+            return jobLockRepository.acquire(jobName, instanceId, lease)
+                    .flatMap(lock -> execute(jobName, job, lease))
+                    .switchIfEmpty(Mono.fromRunnable(() ->
+                            log.info("Job {} en curso en otra instancia, se omite la ejecución", jobName)))
+                    .doFinally(signal -> runningJobs.remove(jobName));
+        });
+    }
+
+    private Mono<JobRun> execute(String jobName, Mono<KpiRunSummary> job, Duration lease) {
+        JobRun run = JobRun.builder()
+                .jobName(jobName)
+                .owner(instanceId)
+                .status("RUNNING")
+                .startTime(LocalDateTime.now())
+                .build();
+
+        return jobRunRepository.save(run)
+                .flatMap(saved -> Mono.usingWhen(
+                                Mono.just(jobName),
+                                name -> Mono.firstWithSignal(job, renewLease(name, lease)),
+                                name -> jobLockRepository.release(name, instanceId),
+                                (name, error) -> jobLockRepository.release(name, instanceId),
+                                name -> jobLockRepository.release(name, instanceId))
+                        .map(summary -> {
+                            saved.setStatus("COMPLETED");
+                            saved.setRangeStart(summary.getStartDate());
+                            saved.setRangeEnd(summary.getEndDate());
+                            saved.setTotalBatches(summary.getTotalBatches());
+                            saved.setFailedBatches(summary.getFailedBatches());
+                            return saved;
+                        })
+                        .defaultIfEmpty(saved.toBuilder().status("COMPLETED").build())
+                        .onErrorResume(e -> {
+                            if (e instanceof LeaseLostException) {
+                                log.error("Job {} cancelado: {}", jobName, e.getMessage());
+                                saved.setStatus("FENCED");
+                            } else {
+                                log.error("Error en la ejecución del job {}", jobName, e);
+                                saved.setStatus("FAILED");
+                            }
+                            saved.setErrorMessage(e.getMessage());
+                            return Mono.just(saved);
+                        })
+                        .flatMap(finished -> {
+                            finished.setEndTime(LocalDateTime.now());
+                            return jobRunRepository.save(finished);
+                        }));
+    }
+
+    // Renueva el lease cada tercio mientras el job sigue en curso. Nunca emite: termina con error, y así
+    // cancela el job, si otra instancia tomó el lease o si no se pudo renovar antes de que venciera
+    private <T> Mono<T> renewLease(String jobName, Duration lease) {
+        AtomicLong renewedAt = new AtomicLong(System.nanoTime());
+        return Flux.interval(lease.dividedBy(3))
+                .concatMap(tick -> jobLockRepository.acquire(jobName, instanceId, lease)
+                        .doOnNext(lock -> renewedAt.set(System.nanoTime()))
+                        .map(lock -> true)
+                        .switchIfEmpty(Mono.error(new LeaseLostException("otra instancia tomó el lease del job " + jobName)))
+                        .onErrorResume(e -> !(e instanceof LeaseLostException), e -> {
+                            log.warn("No se pudo renovar el lease del job {}", jobName, e);
+                            if (System.nanoTime() - renewedAt.get() >= lease.toNanos()) {
+                                return Mono.error(new LeaseLostException("el lease del job " + jobName
+                                        + " venció sin poder renovarse"));
+                            }
+                            return Mono.just(false);
+                        }))
+                .then(Mono.empty());
+    }
+
+    // Lease perdido: otra instancia puede estar ejecutando el mismo job
+    private static class LeaseLostException extends IllegalStateException {
+        LeaseLostException(String message) {
+            super(message);
+        }
+    }
+}
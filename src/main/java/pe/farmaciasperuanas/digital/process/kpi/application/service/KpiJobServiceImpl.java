@@ -0,0 +1,152 @@
+package pe.farmaciasperuanas.digital.process.kpi.application.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.JobProgress;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.KpiJobService;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.KpiService;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Ejecuta los procesamientos de /process en segundo plano: una cola acotada alimenta a lo más
+ * max-concurrent jobs a la vez y el avance de cada uno se consulta o cancela por su id.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class KpiJobServiceImpl implements KpiJobService {
+
+    private final KpiService kpiService;
+    private final KpiPipelineMetrics pipelineMetrics;
+
+    private final Map<String, JobProgress> jobs = new ConcurrentHashMap<>();
+    private final Map<String, Disposable> executions = new ConcurrentHashMap<>();
+    private final Sinks.Many<JobProgress> queue = Sinks.many().unicast().onBackpressureBuffer();
+    private Disposable worker;
+
+    @Value("${kpi.jobs.max-concurrent:2}")
+    private int maxConcurrent; // Jobs de /process en ejecución a la vez por réplica
+
+    @Value("${kpi.jobs.max-queued:20}")
+    private int maxQueued; // Jobs en espera; al superarse, /process responde 429
+
+    @Value("${kpi.jobs.retention:86400}")
+    private long retentionSeconds; // Tiempo (s) que se conserva el avance de un job terminado
+
+    @PostConstruct
+    void startWorker() {
+        worker = queue.asFlux()
+                .flatMap(this::run, maxConcurrent)
+                .subscribe();
+    }
+
+    @PreDestroy
+    void stopWorker() {
+        worker.dispose();
+        executions.values().forEach(Disposable::dispose);
+    }
+
+    @Override
+    public Mono<JobProgress> submit(LocalDate startDate, LocalDate endDate) {
+        return Mono.defer(() -> {
+            if (startDate == null || endDate == null || startDate.isAfter(endDate)) {
+                log.error("Fechas no válidas para procesamiento: start={}, end={}", startDate, endDate);
+                return Mono.error(new IllegalArgumentException("Fechas no válidas"));
+            }
+
+            removeExpiredJobs();
+            long queued = jobs.values().stream()
+                    .filter(job -> JobProgress.PENDING.equals(job.getStatus()))
+                    .count();
+            if (queued >= maxQueued) {
+                return Mono.error(new RejectedExecutionException("Cola de jobs llena (" + maxQueued + " pendientes)"));
+            }
+
+            JobProgress job = new JobProgress(UUID.randomUUID().toString(), startDate, endDate);
+            jobs.put(job.getId(), job);
+            queue.emitNext(job, Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+            log.info("Job {} encolado para el periodo: {} - {}", job.getId(), startDate, endDate);
+            return Mono.just(job);
+        });
+    }
+
+    @Override
+    public Mono<JobProgress> findJob(String jobId) {
+        return Mono.justOrEmpty(jobs.get(jobId));
+    }
+
+    @Override
+    public Mono<JobProgress> cancel(String jobId) {
+        return Mono.justOrEmpty(jobs.get(jobId))
+                .doOnNext(job -> {
+                    // Se marca antes de cancelar para que el cierre de la ejecución no lo sobrescriba
+                    if (job.finish(JobProgress.CANCELLED, null)) {
+                        Disposable execution = executions.remove(jobId);
+                        if (execution != null) {
+                            execution.dispose();
+                        }
+                        log.info("Job {} cancelado ({}/{} lotes completados)", jobId,
+                                job.getCompletedBatches().get(), job.getTotalBatches().get());
+                    }
+                });
+    }
+
+    // Ejecuta un job y completa cuando termina, falla o se cancela, liberando su lugar en la cola
+    private Mono<Void> run(JobProgress job) {
+        return Mono.create(sink -> {
+            if (!job.start()) {
+                // Cancelado mientras esperaba
+                sink.success();
+                return;
+            }
+            pipelineMetrics.recordJobQueueWait(Duration.between(job.getSubmittedAt(), job.getStartedAt()));
+
+            // Si cancel() dispone el swap antes de update(), la suscripción nueva se cancela al asignarse
+            Disposable.Swap execution = Disposables.swap();
+            executions.put(job.getId(), execution);
+            if (job.isFinished()) {
+                executions.remove(job.getId());
+                sink.success();
+                return;
+            }
+            execution.update(kpiService.processKpis(job.getStartDate(), job.getEndDate())
+                    .contextWrite(Context.of(JobProgress.class, job))
+                    .doFinally(signal -> {
+                        executions.remove(job.getId());
+                        sink.success();
+                    })
+                    .subscribe(null,
+                            error -> {
+                                log.error("Error en el job {}", job.getId(), error);
+                                job.finish(JobProgress.FAILED, error.getMessage());
+                            },
+                            () -> {
+                                job.finish(JobProgress.COMPLETED, null);
+                                log.info("Job {} completado: {} lotes, {} eventos leídos, {} KPIs escritos",
+                                        job.getId(), job.getCompletedBatches().get(),
+                                        job.getRowsRead().get(), job.getKpisWritten().get());
+                            }));
+        });
+    }
+
+    private void removeExpiredJobs() {
+        LocalDateTime limit = LocalDateTime.now().minusSeconds(retentionSeconds);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(limit));
+    }
+}
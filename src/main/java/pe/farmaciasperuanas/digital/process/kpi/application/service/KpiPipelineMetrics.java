@@ -0,0 +1,107 @@
+package pe.farmaciasperuanas.digital.process.kpi.application.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Kpi;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.JobProgress;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Métricas de Micrometer por etapa del pipeline: eventos leídos por fuente, KPIs producidos por
+ * prefijo de kpiId, KPIs escritos, duración de lotes y atraso del scheduler. Además registra el
+ * avance en el JobProgress del Context, si lo hay.
+ */
+@Component
+public class KpiPipelineMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public KpiPipelineMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Cuenta los eventos de Salesforce leídos de una fuente; weight da los eventos que representa
+     * cada fila (1, o el conteo de una fila ya agregada en MongoDB)
+     */
+    public <T> Flux<T> rowsRead(String source, Flux<T> rows, ToLongFunction<T> weight) {
+        Counter counter = counter("kpi.rows.read", "Eventos de Salesforce leídos", "source", source);
+        return JobProgress.countRows(rows.doOnNext(row -> counter.increment(weight.applyAsLong(row))), weight);
+    }
+
+    /**
+     * Cuenta los KPIs producidos por un procesamiento, por prefijo de kpiId (MP, MCC, PA...)
+     */
+    public Flux<Kpi> kpisProduced(String source, Flux<Kpi> kpis) {
+        return kpis.doOnNext(kpi -> counter("kpi.kpis.produced", "KPIs calculados",
+                "source", source, "kpi_prefix", kpiPrefix(kpi.getKpiId())).increment());
+    }
+
+    /**
+     * Cuenta los KPIs insertados o modificados por una escritura
+     */
+    public Mono<Long> kpisWritten(String source, Mono<Long> written) {
+        Counter counter = counter("kpi.kpis.written", "KPIs insertados o modificados", "source", source);
+        return JobProgress.countWritten(written.doOnNext(counter::increment));
+    }
+
+    public Timer.Sample startBatch() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * Registra la duración de un lote por alcance (general, proveedor, medio) y resultado
+     */
+    public void recordBatch(Timer.Sample sample, String scope, String outcome) {
+        sample.stop(Timer.builder("kpi.batch.duration")
+                .description("Duración de un lote de KPIs")
+                .tags("scope", scope, "outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    /**
+     * Registra cuánto se atrasó el inicio de una ejecución programada respecto de su hora programada
+     */
+    public void recordSchedulerLag(String job, Duration lag) {
+        Timer.builder("kpi.scheduler.lag")
+                .description("Atraso de una ejecución programada desde su hora programada hasta su inicio")
+                .tag("job", job)
+                .register(meterRegistry)
+                .record(lag);
+    }
+
+    /**
+     * Registra cuánto esperó un job de /process en la cola antes de ejecutarse
+     */
+    public void recordJobQueueWait(Duration wait) {
+        Timer.builder("kpi.jobs.queue.wait")
+                .description("Espera de un job de /process en la cola")
+                .register(meterRegistry)
+                .record(wait);
+    }
+
+    private Counter counter(String name, String description, String... tags) {
+        return counters.computeIfAbsent(name + String.join("|", tags), key -> Counter.builder(name)
+                .description(description)
+                .tags(tags)
+                .register(meterRegistry));
+    }
+
+    private static String kpiPrefix(String kpiId) {
+        if (kpiId == null) {
+            return "";
+        }
+        int separator = kpiId.indexOf('-');
+        return separator > 0 ? kpiId.substring(0, separator) : kpiId;
+    }
+}
@@ -0,0 +1,64 @@
+package pe.farmaciasperuanas.digital.process.kpi.application.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Kpi;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Metrics;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.KpiPeriod;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.KpiQuery;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.KpiRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.MetricsRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.KpiQueryService;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class KpiQueryServiceImpl implements KpiQueryService {
+
+    private static final List<String> GRANULARITIES = List.of(KpiPeriod.DAY, KpiPeriod.WEEK, KpiPeriod.MONTH);
+
+    private final KpiRepository kpiRepository;
+    private final MetricsRepository metricsRepository;
+    private final KpiReadCache kpiReadCache;
+
+    @Value("${kpi.api.default-page-size:500}")
+    private int defaultPageSize; // Registros por página cuando no se indica limit
+
+    @Value("${kpi.api.max-page-size:5000}")
+    private int maxPageSize; // Máximo de registros por página
+
+    @Override
+    public Flux<Kpi> findKpis(KpiQuery query) {
+        if (query.getGranularity() != null && !GRANULARITIES.contains(query.getGranularity())) {
+            return Flux.error(new IllegalArgumentException("Granularidad no válida: " + query.getGranularity()));
+        }
+        if (query.getStartDate() != null && query.getEndDate() != null && query.getStartDate().isAfter(query.getEndDate())) {
+            return Flux.error(new IllegalArgumentException("Fechas no válidas"));
+        }
+
+        query.setLimit(pageSize(query.getLimit()));
+        log.debug("Consultando KPIs: {}", query);
+        return kpiReadCache.kpis(query, () -> kpiRepository.search(query))
+                .doOnError(e -> log.error("Error al consultar KPIs", e));
+    }
+
+    @Override
+    public Flux<Metrics> findMetrics(String afterProviderId, Integer limit) {
+        int pageSize = pageSize(limit != null ? limit : 0);
+        return kpiReadCache.metricsPage(afterProviderId + "|" + pageSize,
+                        () -> metricsRepository.findPage(afterProviderId, pageSize))
+                .doOnError(e -> log.error("Error al consultar métricas", e));
+    }
+
+    private int pageSize(int limit) {
+        if (limit <= 0) {
+            return defaultPageSize;
+        }
+        return Math.min(limit, maxPageSize);
+    }
+}
@@ -0,0 +1,141 @@
+package pe.farmaciasperuanas.digital.process.kpi.application.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Weigher;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Kpi;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Metrics;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.KpiQuery;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.KpiRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caché read-through de las lecturas de dashboards (KPIs y métricas). Las entradas se invalidan
+ * cuando termina un lote que modificó su proveedor o campaña; el TTL solo cubre escrituras externas.
+ * El tamaño se limita por la cantidad de documentos guardados, no por la cantidad de páginas.
+ * Las estadísticas de aciertos, fallos y desalojos se publican en Micrometer (cache.gets, cache.evictions).
+ */
+@Component
+@Slf4j
+public class KpiReadCache {
+
+    private static final String ALL_METRICS = "*";
+
+    private final KpiRepository kpiRepository;
+    private final AsyncCache<KpiQuery, List<Kpi>> kpis;
+    private final AsyncCache<String, Metrics> providerMetrics;
+    private final AsyncCache<String, List<Metrics>> metricsPages;
+
+    // Se incrementa en cada invalidación; una lectura que empezó antes no se guarda
+    private final AtomicLong generation = new AtomicLong();
+
+    public KpiReadCache(KpiRepository kpiRepository,
+                        MeterRegistry meterRegistry,
+                        @Value("${kpi.read-cache.max-weight:200000}") long maxWeight,
+                        @Value("${kpi.read-cache.ttl:300}") long ttlSeconds) {
+        this.kpiRepository = kpiRepository;
+        this.kpis = build(maxWeight, ttlSeconds, (query, page) -> Math.max(1, page.size()));
+        this.providerMetrics = build(maxWeight, ttlSeconds, (providerId, metrics) -> 1);
+        this.metricsPages = build(maxWeight, ttlSeconds, (key, page) -> Math.max(1, page.size()));
+
+        CaffeineCacheMetrics.monitor(meterRegistry, kpis, "kpi.read.kpis");
+        CaffeineCacheMetrics.monitor(meterRegistry, providerMetrics, "kpi.read.provider-metrics");
+        CaffeineCacheMetrics.monitor(meterRegistry, metricsPages, "kpi.read.metrics-pages");
+    }
+
+    public Flux<Kpi> kpis(KpiQuery query, Supplier<Flux<Kpi>> loader) {
+        return Mono.fromFuture(() -> load(kpis, query, () -> loader.get().collectList().toFuture()), true)
+                .flatMapIterable(page -> page);
+    }
+
+    public Mono<Metrics> providerMetrics(String providerId, Supplier<Mono<Metrics>> loader) {
+        // Un proveedor sin métricas no se guarda: Caffeine descarta los valores nulos
+        return Mono.fromFuture(() -> load(providerMetrics, providerId, () -> loader.get().toFuture()), true);
+    }
+
+    public Flux<Metrics> allMetrics(Supplier<Flux<Metrics>> loader) {
+        return metricsPage(ALL_METRICS, loader);
+    }
+
+    public Flux<Metrics> metricsPage(String key, Supplier<Flux<Metrics>> loader) {
+        return Mono.fromFuture(() -> load(metricsPages, key, () -> loader.get().collectList().toFuture()), true)
+                .flatMapIterable(page -> page);
+    }
+
+    /**
+     * Invalida las consultas de KPIs afectadas por los KPIs modificados desde la fecha indicada.
+     * Una consulta sin filtro de proveedor o campaña se considera afectada por cualquier cambio.
+     */
+    public Mono<Void> evictTouchedSince(LocalDateTime since) {
+        return Mono.zip(
+                        kpiRepository.findProviderIdsUpdatedSince(since).collect(HashSet<String>::new, Set::add),
+                        kpiRepository.findCampaignIdsUpdatedSince(since).collect(HashSet<String>::new, Set::add))
+                .doOnNext(touched -> evictKpis(touched.getT1(), touched.getT2()))
+                .then();
+    }
+
+    /**
+     * Invalida las métricas de los proveedores indicados y las páginas de métricas que podrían contenerlas.
+     */
+    public void evictMetrics(Collection<String> providerIds) {
+        if (providerIds.isEmpty()) {
+            return;
+        }
+        generation.incrementAndGet();
+        providerMetrics.asMap().keySet().removeAll(providerIds);
+        metricsPages.asMap().clear();
+        log.debug("Caché de métricas invalidada para {} proveedores", providerIds.size());
+    }
+
+    private void evictKpis(Set<String> providerIds, Set<String> campaignIds) {
+        if (providerIds.isEmpty() && campaignIds.isEmpty()) {
+            return;
+        }
+        generation.incrementAndGet();
+        // asMap() de la caché asíncrona incluye las lecturas en curso, que la vista síncrona omite
+        int before = kpis.asMap().size();
+        kpis.asMap().keySet().removeIf(query ->
+                (query.getProviderId() == null || providerIds.contains(query.getProviderId()))
+                        && (query.getCampaignId() == null || campaignIds.contains(query.getCampaignId())));
+        log.debug("Caché de KPIs: {} consultas invalidadas ({} proveedores, {} campañas modificadas)",
+                before - kpis.asMap().size(), providerIds.size(), campaignIds.size());
+    }
+
+    // Lee de la caché o carga; si hubo una invalidación mientras la lectura estaba en curso, el resultado
+    // se entrega a quien lo pidió pero se retira de la caché porque pudo leer datos anteriores al lote
+    private <K, V> CompletableFuture<V> load(AsyncCache<K, V> cache, K key, Supplier<CompletableFuture<V>> loader) {
+        long started = generation.get();
+        CompletableFuture<V> future = cache.get(key, (k, executor) -> loader.get());
+        future.whenComplete((value, error) -> {
+            if (generation.get() != started) {
+                cache.asMap().remove(key, future);
+            }
+        });
+        return future;
+    }
+
+    private static <K, V> AsyncCache<K, V> build(long maxWeight, long ttlSeconds, Weigher<K, V> weigher) {
+        return Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher(weigher)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .buildAsync();
+    }
+}
@@ -1,10 +1,20 @@
 // src/main/java/pe/farmaciasperuanas/digital/process/kpi/application/service/KpiServiceImpl.java
 package pe.farmaciasperuanas.digital.process.kpi.application.service;
 
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Watermark;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.JobProgress;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.KpiRunSummary;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.KpiRollupRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.SalesforceClicksRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.SalesforceOpensRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.SalesforcePushRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.SalesforceSentsRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.WatermarkRepository;
 import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.KpiService;
 import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.MediosMailingService;
 import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.MediosPushService;
@@ -13,11 +23,12 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
-import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
+import java.util.function.BiFunction;
 
 @Service
 @RequiredArgsConstructor
@@ -27,12 +38,33 @@ public class KpiServiceImpl implements KpiService {
     private final MediosMailingService mediosMailingService;
     private final MediosPushService mediosPushService;
     private final MetricsService metricsService;
+    private final SalesforceOpensRepository salesforceOpensRepository;
+    private final SalesforceClicksRepository salesforceClicksRepository;
+    private final SalesforceSentsRepository salesforceSentsRepository;
+    private final SalesforcePushRepository salesforcePushRepository;
+    private final WatermarkRepository watermarkRepository;
+    private final KpiRollupRepository kpiRollupRepository;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final KpiReadCache kpiReadCache;
+    private final KpiPipelineMetrics pipelineMetrics;
+
+    private static final String SOURCE_OPENS = "salesforce_opens";
+    private static final String SOURCE_CLICKS = "salesforce_clicks";
+    private static final String SOURCE_SENTS = "salesforce_sents";
+    private static final String SOURCE_PUSH = "salesforce_push";
+    private static final List<String> SOURCES = List.of(SOURCE_OPENS, SOURCE_CLICKS, SOURCE_SENTS, SOURCE_PUSH);
 
     @Value("${kpi.batch.size:3}")
     private int batchSize; // Número de días a procesar por lote
 
-    @Value("${kpi.batch.delay:500}")
-    private int batchDelayMillis; // Delay entre lotes para evitar sobrecarga
+    @Value("${kpi.incremental.initial-days:7}")
+    private int initialDays; // Días a procesar cuando una fuente aún no tiene marca de agua
+
+    @Value("${kpi.incremental.late-arrival-days:1}")
+    private int lateArrivalDays; // Días reprocesados antes de la marca de agua para eventos tardíos
+
+    @Value("${kpi.incremental.max-lookback-days:14}")
+    private int maxLookbackDays; // Máximo de días hacia atrás de una ejecución programada
 
     @Override
     public Mono<Void> processKpis(LocalDate startDate, LocalDate endDate) {
@@ -51,39 +83,69 @@ public class KpiServiceImpl implements KpiService {
         log.info("Procesando {} días en lotes de {}", totalDays, batchSize);
 
         // Agrupar días en lotes
-        List<List<LocalDate>> batches = new ArrayList<>();
-        for (int i = 0; i < dates.size(); i += batchSize) {
-            int end = Math.min(i + batchSize, dates.size());
-            batches.add(dates.subList(i, end));
-        }
+        List<List<LocalDate>> batches = createBatches(dates, batchSize);
 
-        AtomicInteger processedBatches = new AtomicInteger(0);
-        int totalBatches = batches.size();
-
-        // Procesar cada lote secuencialmente
-        return Flux.fromIterable(batches)
-                .concatMap(batch -> {
-                    LocalDate batchStart = batch.get(0);
-                    LocalDate batchEnd = batch.get(batch.size() - 1);
-                    int currentBatch = processedBatches.incrementAndGet();
-
-                    log.info("Procesando lote {}/{}: {} - {}",
-                            currentBatch, totalBatches, batchStart, batchEnd);
-
-                    return processBatch(batchStart, batchEnd)
-                            .doOnSuccess(v -> log.info("Lote {}/{} completado", currentBatch, totalBatches))
-                            .onErrorResume(e -> {
-                                log.error("Error procesando lote {}/{}: {}",
-                                        currentBatch, totalBatches, e.getMessage());
-                                return Mono.empty();
-                            })
-                            // Añadir delay entre lotes para reducir carga
-                            .delayElement(Duration.ofMillis(batchDelayMillis));
+        // Las métricas se recalculan solo para los proveedores cuyos KPIs cambiaron desde el inicio
+        return Mono.defer(() -> {
+                    LocalDateTime since = LocalDateTime.now();
+                    return processBatches(batches)
+                            .then(Mono.defer(() -> metricsService.calculateGeneralMetrics(since)));
                 })
-                .then(metricsService.calculateGeneralMetrics())
                 .doOnSuccess(v -> log.info("Procesamiento de todos los lotes completado"));
     }
 
+    // Procesa los lotes con la concurrencia que fija el limitador adaptativo y retorna
+    // la cantidad de lotes fallidos
+    private Mono<Integer> processBatches(List<List<LocalDate>> batches) {
+        return processBatches(batches, "general", "", this::processBatch);
+    }
+
+    private Mono<Integer> processBatches(List<List<LocalDate>> batches, String batchType, String scope,
+                                         BiFunction<LocalDate, LocalDate, Mono<Void>> processor) {
+        // El avance se registra en el job del Context (POST /process) o en uno local si no hay job
+        return Mono.deferContextual(context -> {
+            JobProgress progress = context.<JobProgress>getOrEmpty(JobProgress.class)
+                    .orElseGet(() -> new JobProgress(null, null, null));
+            int failedBefore = progress.getFailedBatches().get();
+            int totalBatches = batches.size();
+            progress.addBatches(totalBatches);
+
+            return Flux.fromIterable(batches)
+                    .flatMap(batch -> concurrencyLimiter.acquire().flatMap(permit -> {
+                        LocalDate batchStart = batch.get(0);
+                        LocalDate batchEnd = batch.get(batch.size() - 1);
+                        int currentBatch = progress.startBatch();
+
+                        log.info("Procesando lote {}/{}{}: {} - {}",
+                                currentBatch, totalBatches, scope, batchStart, batchEnd);
+
+                        LocalDateTime startedAt = LocalDateTime.now();
+                        Timer.Sample sample = pipelineMetrics.startBatch();
+                        return processor.apply(batchStart, batchEnd)
+                                // Invalida las lecturas en caché de los proveedores y campañas que tocó el lote
+                                .then(Mono.defer(() -> kpiReadCache.evictTouchedSince(startedAt)))
+                                .doOnSuccess(v -> {
+                                    log.info("Lote {}/{}{} completado", currentBatch, totalBatches, scope);
+                                    progress.completeBatch();
+                                    pipelineMetrics.recordBatch(sample, batchType, "success");
+                                    permit.release(true);
+                                })
+                                .onErrorResume(e -> {
+                                    log.error("Error procesando lote {}/{}{}: {}",
+                                            currentBatch, totalBatches, scope, e.getMessage());
+                                    progress.failBatch();
+                                    pipelineMetrics.recordBatch(sample, batchType, "error");
+                                    permit.release(false);
+                                    return Mono.empty();
+                                })
+                                // Una cancelación (p. ej. DELETE /kpi/jobs/{id}) no es un error de MongoDB: el cupo
+                                // se devuelve sin reducir el límite compartido
+                                .doOnCancel(permit::discard);
+                    }), concurrencyLimiter.getMaxLimit())
+                    .then(Mono.fromSupplier(() -> progress.getFailedBatches().get() - failedBefore));
+        });
+    }
+
     private Mono<Void> processBatch(LocalDate startDate, LocalDate endDate) {
         return Mono.when(
                 processMediosPropiosKpis(startDate, endDate),
@@ -105,35 +167,11 @@ public class KpiServiceImpl implements KpiService {
                 totalDays, batchSize, providerId);
 
         // Agrupar días en lotes
-        List<List<LocalDate>> batches = new ArrayList<>();
-        for (int i = 0; i < dates.size(); i += batchSize) {
-            int end = Math.min(i + batchSize, dates.size());
-            batches.add(dates.subList(i, end));
-        }
+        List<List<LocalDate>> batches = createBatches(dates, batchSize);
 
-        AtomicInteger processedBatches = new AtomicInteger(0);
-        int totalBatches = batches.size();
-
-        return Flux.fromIterable(batches)
-                .concatMap(batch -> {
-                    LocalDate batchStart = batch.get(0);
-                    LocalDate batchEnd = batch.get(batch.size() - 1);
-                    int currentBatch = processedBatches.incrementAndGet();
-
-                    log.info("Procesando lote {}/{} para proveedor {}: {} - {}",
-                            currentBatch, totalBatches, providerId, batchStart, batchEnd);
-
-                    return processProviderBatch(providerId, batchStart, batchEnd)
-                            .doOnSuccess(v -> log.info("Lote {}/{} para proveedor {} completado",
-                                    currentBatch, totalBatches, providerId))
-                            .onErrorResume(e -> {
-                                log.error("Error procesando lote {}/{} para proveedor {}: {}",
-                                        currentBatch, totalBatches, providerId, e.getMessage());
-                                return Mono.empty();
-                            })
-                            .delayElement(Duration.ofMillis(batchDelayMillis));
-                })
-                .then(metricsService.calculateProviderMetrics(providerId))
+        return processBatches(batches, "proveedor", " para proveedor " + providerId,
+                        (batchStart, batchEnd) -> processProviderBatch(providerId, batchStart, batchEnd))
+                .then(Mono.defer(() -> metricsService.calculateProviderMetrics(providerId)))
                 .doOnSuccess(v -> log.info("Procesamiento para proveedor {} completado", providerId));
     }
 
@@ -151,30 +189,10 @@ public class KpiServiceImpl implements KpiService {
         List<LocalDate> dates = getDatesInRange(startDate, endDate);
 
         // Agrupar días en lotes
-        List<List<LocalDate>> batches = createBatches(dates);
-
-        AtomicInteger processedBatches = new AtomicInteger(0);
-        int totalBatches = batches.size();
-
-        return Flux.fromIterable(batches)
-                .concatMap(batch -> {
-                    LocalDate batchStart = batch.get(0);
-                    LocalDate batchEnd = batch.get(batch.size() - 1);
-                    int currentBatch = processedBatches.incrementAndGet();
-
-                    log.info("Procesando lote {}/{} para medio {}: {} - {}",
-                            currentBatch, totalBatches, medium, batchStart, batchEnd);
-
-                    return processMediumBatch(medium, batchStart, batchEnd)
-                            .doOnSuccess(v -> log.info("Lote {}/{} para medio {} completado",
-                                    currentBatch, totalBatches, medium))
-                            .onErrorResume(e -> {
-                                log.error("Error procesando lote {}/{} para medio {}: {}",
-                                        currentBatch, totalBatches, medium, e.getMessage());
-                                return Mono.empty();
-                            })
-                            .delayElement(Duration.ofMillis(batchDelayMillis));
-                })
+        List<List<LocalDate>> batches = createBatches(dates, batchSize);
+
+        return processBatches(batches, "medio", " para medio " + medium,
+                        (batchStart, batchEnd) -> processMediumBatch(medium, batchStart, batchEnd))
                 .then()
                 .doOnSuccess(v -> log.info("Procesamiento para medio {} completado", medium));
     }
@@ -197,38 +215,107 @@ public class KpiServiceImpl implements KpiService {
     }
 
     @Override
-    public Mono<Void> processAllPendingKpis() {
+    public Mono<KpiRunSummary> processAllPendingKpis() {
         LocalDate endDate = LocalDate.now();
-        LocalDate startDate = endDate.minusDays(7); // Por defecto procesamos la última semana
 
-        log.info("Iniciando procesamiento automático de KPIs para el periodo: {} - {}",
-                startDate, endDate);
+        // Último evento disponible por fuente; se lee antes de procesar para no saltar
+        // eventos que lleguen mientras corre el proceso
+        Mono<Map<String, LocalDateTime>> latestEventDates = Flux.merge(
+                        latestEventDate(SOURCE_OPENS, salesforceOpensRepository.findLatestEventDate()),
+                        latestEventDate(SOURCE_CLICKS, salesforceClicksRepository.findLatestEventDate()),
+                        latestEventDate(SOURCE_SENTS, salesforceSentsRepository.findLatestEventDate()),
+                        latestEventDate(SOURCE_PUSH, salesforcePushRepository.findLatestFechaProceso()
+                                .map(fechaProceso -> LocalDate.parse(fechaProceso).atStartOfDay())))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+
+        // El periodo arranca en la marca de agua más antigua, menos la ventana de llegadas tardías; una
+        // fuente inactiva o atrasada no arrastra el periodo de las demás más allá de max-lookback-days
+        LocalDate earliestStart = endDate.minusDays(maxLookbackDays);
+        Mono<LocalDate> startDate = Flux.fromIterable(SOURCES)
+                .flatMap(source -> watermarkRepository.findBySource(source)
+                        .mapNotNull(Watermark::getLastEventDate)
+                        .map(LocalDateTime::toLocalDate)
+                        .defaultIfEmpty(endDate.minusDays(initialDays)))
+                .reduce((first, second) -> first.isBefore(second) ? first : second)
+                .map(oldest -> oldest.minusDays(lateArrivalDays))
+                .map(start -> {
+                    if (start.isBefore(earliestStart)) {
+                        log.warn("Marca de agua más antigua {} fuera de la ventana máxima; se procesa desde {}. "
+                                + "Use /kpi/process para reprocesar días anteriores", start, earliestStart);
+                        return earliestStart;
+                    }
+                    return start;
+                });
+
+        return Mono.zip(startDate, latestEventDates)
+                .flatMap(tuple -> {
+                    LocalDate start = tuple.getT1().isAfter(endDate) ? endDate : tuple.getT1();
+                    Map<String, LocalDateTime> latest = tuple.getT2();
+
+                    log.info("Iniciando procesamiento incremental de KPIs para el periodo: {} - {}",
+                            start, endDate);
+
+                    // Un lote por día: el periodo de cada KPI es estable entre ejecuciones y el upsert
+                    // reemplaza los contadores de los días con eventos nuevos o tardíos
+                    List<List<LocalDate>> batches = createBatches(getDatesInRange(start, endDate), 1);
+                    LocalDateTime since = LocalDateTime.now();
+
+                    return processBatches(batches)
+                            .flatMap(failedBatches -> metricsService.calculateGeneralMetrics(since)
+                                    .then(failedBatches > 0
+                                            ? Mono.fromRunnable(() -> log.warn(
+                                                    "{} lotes fallidos, las marcas de agua no se actualizan", failedBatches))
+                                            : saveWatermarks(latest))
+                                    .thenReturn(KpiRunSummary.builder()
+                                            .startDate(start)
+                                            .endDate(endDate)
+                                            .totalBatches(batches.size())
+                                            .failedBatches(failedBatches)
+                                            .build()));
+                });
+    }
+
+    private Mono<Void> saveWatermarks(Map<String, LocalDateTime> latest) {
+        return Flux.fromIterable(latest.entrySet())
+                .flatMap(entry -> watermarkRepository.save(Watermark.builder()
+                        .id(entry.getKey())
+                        .lastEventDate(entry.getValue())
+                        .build()))
+                .then()
+                .doOnSuccess(v -> log.info("Marcas de agua actualizadas: {}", latest));
+    }
 
-        return processKpis(startDate, endDate);
+    private Mono<Map.Entry<String, LocalDateTime>> latestEventDate(String source, Mono<LocalDateTime> eventDate) {
+        return eventDate.map(date -> Map.entry(source, date));
     }
 
     private Mono<Void> processMediosPropiosKpis(LocalDate startDate, LocalDate endDate) {
         log.info("Procesando KPIs de medios propios para periodo: {} - {}", startDate, endDate);
 
+        // Cada día del lote se guarda como su propio bucket diario; luego se recalculan los rollups
+        // semanales y mensuales que lo contienen
+        return Flux.fromIterable(getDatesInRange(startDate, endDate))
+                .concatMap(this::processMediosPropiosDay)
+                .then(Mono.defer(() -> kpiRollupRepository.refresh(startDate, endDate)))
+                .then()
+                .doOnSuccess(v -> log.info("Procesamiento de KPIs de medios propios completado para periodo: {} - {}",
+                        startDate, endDate));
+    }
+
+    private Mono<Void> processMediosPropiosDay(LocalDate day) {
         return Mono.when(
                         // Procesamiento paralelo para mejorar rendimiento
                         Flux.merge(
-                                mediosMailingService.processMailingPadreKpis(startDate, endDate)
-                                        .subscribeOn(Schedulers.parallel()),
-                                mediosMailingService.processMailingCabeceraKpis(startDate, endDate)
-                                        .subscribeOn(Schedulers.parallel()),
-                                mediosMailingService.processMailingFeedKpis(startDate, endDate)
+                                mediosMailingService.processMailingPadreKpis(day, day)
                                         .subscribeOn(Schedulers.parallel()),
-                                mediosMailingService.processMailingBodyKpis(startDate, endDate)
+                                // Cabecera, feed y body comparten una sola lectura de clics
+                                mediosMailingService.processMailingFormatKpis(day, day)
                                         .subscribeOn(Schedulers.parallel()),
-                                mediosPushService.processPushAppKpis(startDate, endDate)
-                                        .subscribeOn(Schedulers.parallel()),
-                                mediosPushService.processPushWebKpis(startDate, endDate)
+                                // Push app y push web salen de una sola consulta agrupada por canal
+                                mediosPushService.processPushKpis(day, day)
                                         .subscribeOn(Schedulers.parallel())
                         ).then()
-                )
-                .doOnSuccess(v -> log.info("Procesamiento de KPIs de medios propios completado para periodo: {} - {}",
-                        startDate, endDate));
+                );
     }
 
     // Método auxiliar para obtener la lista de fechas en un rango
@@ -243,10 +330,10 @@ public class KpiServiceImpl implements KpiService {
     }
 
     // Método auxiliar para dividir una lista en lotes
-    private List<List<LocalDate>> createBatches(List<LocalDate> dates) {
+    private List<List<LocalDate>> createBatches(List<LocalDate> dates, int size) {
         List<List<LocalDate>> batches = new ArrayList<>();
-        for (int i = 0; i < dates.size(); i += batchSize) {
-            int end = Math.min(i + batchSize, dates.size());
+        for (int i = 0; i < dates.size(); i += size) {
+            int end = Math.min(i + size, dates.size());
             batches.add(dates.subList(i, end));
         }
         return batches;
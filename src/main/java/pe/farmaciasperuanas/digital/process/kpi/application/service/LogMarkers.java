@@ -0,0 +1,18 @@
+package pe.farmaciasperuanas.digital.process.kpi.application.service;
+
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+/**
+ * Markers de logback; los eventos con BUSINESS van a business.log en lugar de system.log
+ */
+final class LogMarkers {
+
+    /**
+     * Resúmenes por lote del procesamiento de KPIs; reemplazan los logs por evento o por documento
+     */
+    static final Marker BUSINESS = MarkerFactory.getMarker("BUSINESS");
+
+    private LogMarkers() {
+    }
+}
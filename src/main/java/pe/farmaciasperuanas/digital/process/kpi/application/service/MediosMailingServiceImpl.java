@@ -3,7 +3,12 @@ package pe.farmaciasperuanas.digital.process.kpi.application.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.CampaignMetadata;
 import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Kpi;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.SendCampaign;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.KpiPeriod;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.MailingFormats;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.SendIdCount;
 import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.KpiRepository;
 import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.SalesforceClicksRepository;
 import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.SalesforceOpensRepository;
@@ -16,19 +21,29 @@ import reactor.core.publisher.Mono;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class MediosMailingServiceImpl implements MediosMailingService {
 
+    private static final String SOURCE_OPENS = "salesforce_opens";
+    private static final String SOURCE_CLICKS = "salesforce_clicks";
+    private static final String SOURCE_SENTS = "salesforce_sents";
+    private static final String MAILING_PADRE = "mailing_padre";
+    private static final String MAILING_FORMATOS = "mailing_formatos";
+
     private final SalesforceClicksRepository salesforceClicksRepository;
     private final SalesforceOpensRepository salesforceOpensRepository;
     private final SalesforceSentsRepository salesforceSentsRepository;
     private final KpiRepository kpiRepository;
     private final UtmParserService utmParserService;
+    private final KpiPipelineMetrics pipelineMetrics;
 
     @Override
     public Mono<Void> processMailingPadreKpis(LocalDate startDate, LocalDate endDate) {
@@ -36,250 +51,240 @@ public class MediosMailingServiceImpl implements MediosMailingService {
 
         LocalDateTime startDateTime = startDate.atStartOfDay();
         LocalDateTime endDateTime = endDate.atTime(LocalTime.MAX);
+        String period = KpiPeriod.of(startDate, endDate);
+
+        // Las tres agregaciones ($match/$group por sendID) se ejecutan en paralelo en MongoDB
+        return Mono.zip(
+                        countsBySendId(SOURCE_OPENS, salesforceOpensRepository.countBySendId(startDateTime, endDateTime)),
+                        countsBySendId(SOURCE_CLICKS, salesforceClicksRepository.countBySendId(startDateTime, endDateTime)),
+                        countsBySendId(SOURCE_SENTS, salesforceSentsRepository.countBySendId(startDateTime, endDateTime))
+                )
+                // Procesar y guardar KPIs
+                .flatMap(counts -> {
+                        Map<Integer, Long> opensCountBySendId = counts.getT1();
+                        Map<Integer, Long> clicksCountBySendId = counts.getT2();
+                        Map<Integer, Long> sentsCountBySendId = counts.getT3();
 
-        Map<String, Integer> opensCountBySendId = new ConcurrentHashMap<>();
-        Map<String, Integer> clicksCountBySendId = new ConcurrentHashMap<>();
-        Map<String, Integer> sentsCountBySendId = new ConcurrentHashMap<>();
+                        // Los sendID del lote se resuelven contra salesforce_send_campaigns con un solo $in
+                        return utmParserService.resolveSendIds(opensCountBySendId.keySet())
+                                .flatMap(campaigns -> {
+                                    // Los sendID de una misma campaña comparten la llave natural del KPI; se suman antes
+                                    // de escribir para que cada llave tenga un solo upsert en el bulk
+                                    Map<String, CampaignCounts> countsByCampaign = new LinkedHashMap<>();
+                                    for (Integer sendId : opensCountBySendId.keySet()) {
+                                        SendCampaign campaign = campaigns.get(sendId);
+                                        if (campaign != null) {
+                                            countsByCampaign.computeIfAbsent(campaign.getCampaignId(), id -> new CampaignCounts())
+                                                    .add(campaign.getProviderId(),
+                                                            opensCountBySendId.getOrDefault(sendId, 0L),
+                                                            clicksCountBySendId.getOrDefault(sendId, 0L),
+                                                            sentsCountBySendId.getOrDefault(sendId, 0L));
+                                        }
+                                    }
+                                    Flux<Kpi> kpis = Flux.fromIterable(countsByCampaign.entrySet())
+                                            .flatMapIterable(entry -> padreKpis(entry.getKey(), entry.getValue(), period));
 
-        // 1. Obtener aperturas (MP-I: Impresiones/Aperturas)
-        return salesforceOpensRepository.findByDateRange(startDateTime, endDateTime)
-                .groupBy(open -> open.getSendID().toString())
-                .flatMap(group -> {
-                    String sendId = group.key();
-                    return group.count()
-                            .doOnNext(count -> opensCountBySendId.put(sendId, count.intValue()));
+                                    // Escritura bulk idempotente de los cinco KPIs por campaña
+                                    return pipelineMetrics.kpisWritten(MAILING_PADRE, kpiRepository.upsertAll(
+                                            pipelineMetrics.kpisProduced(MAILING_PADRE, kpis)))
+                                            .doOnNext(written -> log.info(LogMarkers.BUSINESS,
+                                                    "Mailing Padre {}: {} sendID, {} aperturas, {} clics, {} envíos, {} KPIs escritos",
+                                                    period, opensCountBySendId.size(), total(opensCountBySendId),
+                                                    total(clicksCountBySendId), total(sentsCountBySendId), written))
+                                            .then();
+                                });
                 })
-                .then()
+                .doOnError(e -> log.error("Error al procesar KPIs de Mailing Padre", e));
+    }
 
-                // 2. Obtener clics (MP-C: Clics)
-                .then(Mono.defer(() ->
-                        salesforceClicksRepository.findByDateRange(startDateTime, endDateTime)
-                                .groupBy(click -> click.getSendID().toString())
-                                .flatMap(group -> {
-                                    String sendId = group.key();
-                                    return group.count()
-                                            .doOnNext(count -> clicksCountBySendId.put(sendId, count.intValue()));
-                                })
-                                .then()
-                ))
+    // KPIs de Mailing Padre de una campaña a partir de los conteos sumados de sus sendID
+    private static List<Kpi> padreKpis(String campaignId, CampaignCounts counts, String period) {
+        // Calcular Open Rate (MP-OR)
+        double openRate = counts.sents > 0 ? (double) counts.opens / counts.sents * 100 : 0;
 
-                // 3. Obtener envíos (MP-A: Alcance/Envíos)
-                .then(Mono.defer(() ->
-                        salesforceSentsRepository.findByDateRange(startDateTime, endDateTime)
-                                .groupBy(sent -> sent.getSendID().toString())
-                                .flatMap(group -> {
-                                    String sendId = group.key();
-                                    return group.count()
-                                            .doOnNext(count -> sentsCountBySendId.put(sendId, count.intValue()));
-                                })
-                                .then()
-                ))
+        // Calcular CTR (MP-CR)
+        double ctr = counts.opens > 0 ? (double) counts.clicks / counts.opens * 100 : 0;
 
-                // 4. Procesar y guardar KPIs
-                .then(Mono.defer(() ->
-                        Flux.fromIterable(opensCountBySendId.keySet())
-                                .flatMap(sendId ->
-                                        utmParserService.extractCampaignIdFromSendId(Integer.parseInt(sendId))
-                                                .flatMap(campaignId -> {
-                                                    int opens = opensCountBySendId.getOrDefault(sendId, 0);
-                                                    int clicks = clicksCountBySendId.getOrDefault(sendId, 0);
-                                                    int sents = sentsCountBySendId.getOrDefault(sendId, 0);
+        // Guardar KPI de aperturas (MP-I)
+        Kpi opensKpi = Kpi.builder()
+                .campaignId(campaignId)
+                .providerId(counts.providerId)
+                .kpiId("MP-I")
+                .kpiDescription("Impresiones (Aperturas)")
+                .type("Cantidad")
+                .value((double) counts.opens)
+                .status("A")
+                .period(period)
+                .build();
 
-                                                    // Calcular Open Rate (MP-OR)
-                                                    double openRate = sents > 0 ? (double) opens / sents * 100 : 0;
+        // Guardar KPI de envíos (MP-A)
+        Kpi sentsKpi = Kpi.builder()
+                .campaignId(campaignId)
+                .providerId(counts.providerId)
+                .kpiId("MP-A")
+                .kpiDescription("Alcance (Envíos)")
+                .type("Cantidad")
+                .value((double) counts.sents)
+                .status("A")
+                .period(period)
+                .build();
 
-                                                    // Calcular CTR (MP-CR)
-                                                    double ctr = opens > 0 ? (double) clicks / opens * 100 : 0;
+        // Guardar KPI de clics (MP-C)
+        Kpi clicksKpi = Kpi.builder()
+                .campaignId(campaignId)
+                .providerId(counts.providerId)
+                .kpiId("MP-C")
+                .kpiDescription("Clics")
+                .type("Cantidad")
+                .value((double) counts.clicks)
+                .status("A")
+                .period(period)
+                .build();
 
-                                                    // Guardar KPI de aperturas (MP-I)
-                                                    Kpi opensKpi = Kpi.builder()
-                                                            .campaignId(campaignId)
-                                                            .kpiId("MP-I")
-                                                            .kpiDescription("Impresiones (Aperturas)")
-                                                            .type("Cantidad")
-                                                            .value((double) opens)
-                                                            .status("A")
-                                                            .build();
+        // Guardar KPI de Open Rate (MP-OR)
+        Kpi openRateKpi = Kpi.builder()
+                .campaignId(campaignId)
+                .providerId(counts.providerId)
+                .kpiId("MP-OR")
+                .kpiDescription("Open Rate (OR)")
+                .type("Porcentaje")
+                .value(openRate)
+                .numerator((double) counts.opens)
+                .denominator((double) counts.sents)
+                .status("A")
+                .period(period)
+                .build();
 
-                                                    // Guardar KPI de envíos (MP-A)
-                                                    Kpi sentsKpi = Kpi.builder()
-                                                            .campaignId(campaignId)
-                                                            .kpiId("MP-A")
-                                                            .kpiDescription("Alcance (Envíos)")
-                                                            .type("Cantidad")
-                                                            .value((double) sents)
-                                                            .status("A")
-                                                            .build();
+        // Guardar KPI de CTR (MP-CR)
+        Kpi ctrKpi = Kpi.builder()
+                .campaignId(campaignId)
+                .providerId(counts.providerId)
+                .kpiId("MP-CR")
+                .kpiDescription("CTR (CR)")
+                .type("Porcentaje")
+                .value(ctr)
+                .numerator((double) counts.clicks)
+                .denominator((double) counts.opens)
+                .status("A")
+                .period(period)
+                .build();
 
-                                                    // Guardar KPI de clics (MP-C)
-                                                    Kpi clicksKpi = Kpi.builder()
-                                                            .campaignId(campaignId)
-                                                            .kpiId("MP-C")
-                                                            .kpiDescription("Clics")
-                                                            .type("Cantidad")
-                                                            .value((double) clicks)
-                                                            .status("A")
-                                                            .build();
+        return List.of(opensKpi, sentsKpi, clicksKpi, openRateKpi, ctrKpi);
+    }
 
-                                                    // Guardar KPI de Open Rate (MP-OR)
-                                                    Kpi openRateKpi = Kpi.builder()
-                                                            .campaignId(campaignId)
-                                                            .kpiId("MP-OR")
-                                                            .kpiDescription("Open Rate (OR)")
-                                                            .type("Porcentaje")
-                                                            .value(openRate)
-                                                            .status("A")
-                                                            .build();
+    private static long total(Map<Integer, Long> countsBySendId) {
+        return countsBySendId.values().stream().mapToLong(Long::longValue).sum();
+    }
 
-                                                    // Guardar KPI de CTR (MP-CR)
-                                                    Kpi ctrKpi = Kpi.builder()
-                                                            .campaignId(campaignId)
-                                                            .kpiId("MP-CR")
-                                                            .kpiDescription("CTR (CR)")
-                                                            .type("Porcentaje")
-                                                            .value(ctr)
-                                                            .status("A")
-                                                            .build();
+    // Indexa por sendID los conteos agregados en MongoDB
+    private Mono<Map<Integer, Long>> countsBySendId(String source, Flux<SendIdCount> counts) {
+        return pipelineMetrics.rowsRead(source, counts, count -> count.getCount() != null ? count.getCount() : 0)
+                .filter(count -> count.getSendID() != null)
+                .collectMap(SendIdCount::getSendID, SendIdCount::getCount);
+    }
 
-                                                    return Mono.when(
-                                                            kpiRepository.save(opensKpi),
-                                                            kpiRepository.save(sentsKpi),
-                                                            kpiRepository.save(clicksKpi),
-                                                            kpiRepository.save(openRateKpi),
-                                                            kpiRepository.save(ctrKpi)
-                                                    );
-                                                })
-                                                .onErrorResume(e -> {
-                                                    log.error("Error procesando KPIs para sendId: {}", sendId, e);
-                                                    return Mono.empty();
-                                                })
-                                )
-                                .then()
-                ))
-                .doOnSuccess(v -> log.info("Procesamiento de KPIs de Mailing Padre completado"))
-                .doOnError(e -> log.error("Error al procesar KPIs de Mailing Padre", e));
+    @Override
+    public Mono<Void> processMailingFormatKpis(LocalDate startDate, LocalDate endDate) {
+        return processClickFormats(startDate, endDate, MailingFormats.CLICK_KPIS_BY_FORMAT.keySet());
     }
 
     @Override
     public Mono<Void> processMailingCabeceraKpis(LocalDate startDate, LocalDate endDate) {
-        log.info("Procesando KPIs de Mailing Cabecera para el periodo: {} - {}", startDate, endDate);
-
-        LocalDateTime startDateTime = startDate.atStartOfDay();
-        LocalDateTime endDateTime = endDate.atTime(LocalTime.MAX);
-
-        // Buscamos los clics en mailing cabecera analizando los utm_campaign en las URLs
-        return salesforceClicksRepository.findByDateRange(startDateTime, endDateTime)
-                .filter(click -> click.getUrl() != null && click.getUrl().contains("utm_campaign"))
-                .flatMap(click ->
-                        utmParserService.extractMetadataFromUrl(click.getUrl())
-                                .filter(metadata -> "MC".equals(metadata.getFormat()))
-                                .map(metadata -> {
-                                    // Agrupamos por campaignSubId
-                                    return Map.entry(metadata.getCampaignSubId(), click);
-                                })
-                )
-                .groupBy(Map.Entry::getKey)
-                .flatMap(group -> {
-                    String campaignSubId = group.key();
-                    return group.count()
-                            .flatMap(clickCount -> {
-                                // Guardar KPI de clics (MCC)
-                                Kpi clicksKpi = Kpi.builder()
-                                        .campaignSubId(campaignSubId)
-                                        .kpiId("MCC")
-                                        .kpiDescription("Clics")
-                                        .type("Cantidad")
-                                        .value(clickCount.doubleValue())
-                                        .status("A")
-                                        .build();
-
-                                return kpiRepository.save(clicksKpi);
-                            });
-                })
-                .then()
-                .doOnSuccess(v -> log.info("Procesamiento de KPIs de Mailing Cabecera completado"))
-                .doOnError(e -> log.error("Error al procesar KPIs de Mailing Cabecera", e));
+        return processClickFormats(startDate, endDate, Set.of("MC"));
     }
 
     @Override
     public Mono<Void> processMailingFeedKpis(LocalDate startDate, LocalDate endDate) {
-        log.info("Procesando KPIs de Mailing Feed para el periodo: {} - {}", startDate, endDate);
+        return processClickFormats(startDate, endDate, Set.of("MF"));
+    }
+
+    @Override
+    public Mono<Void> processMailingBodyKpis(LocalDate startDate, LocalDate endDate) {
+        return processClickFormats(startDate, endDate, Set.of("MB"));
+    }
+
+    /**
+     * Recorre una sola vez los clics del periodo, parsea cada URL una sola vez y reparte
+     * los conteos por campaignSubId en un acumulador por formato.
+     */
+    private Mono<Void> processClickFormats(LocalDate startDate, LocalDate endDate, Set<String> formats) {
+        log.info("Procesando KPIs de clics por formato {} para el periodo: {} - {}", formats, startDate, endDate);
 
         LocalDateTime startDateTime = startDate.atStartOfDay();
         LocalDateTime endDateTime = endDate.atTime(LocalTime.MAX);
+        String period = KpiPeriod.of(startDate, endDate);
 
-        // Similar a Mailing Cabecera pero para formato MF
-        return salesforceClicksRepository.findByDateRange(startDateTime, endDateTime)
+        // Buscamos los clics analizando los utm_campaign en las URLs
+        return pipelineMetrics.rowsRead(SOURCE_CLICKS, salesforceClicksRepository.findEventsByDateRange(startDateTime, endDateTime), click -> 1)
                 .filter(click -> click.getUrl() != null && click.getUrl().contains("utm_campaign"))
-                .flatMap(click ->
-                        utmParserService.extractMetadataFromUrl(click.getUrl())
-                                .filter(metadata -> "MF".equals(metadata.getFormat()))
-                                .map(metadata -> {
-                                    // Agrupamos por campaignSubId
-                                    return Map.entry(metadata.getCampaignSubId(), click);
-                                })
-                )
-                .groupBy(Map.Entry::getKey)
-                .flatMap(group -> {
-                    String campaignSubId = group.key();
-                    return group.count()
-                            .flatMap(clickCount -> {
-                                // Guardar KPI de clics (MFC)
-                                Kpi clicksKpi = Kpi.builder()
-                                        .campaignSubId(campaignSubId)
-                                        .kpiId("MFC")
-                                        .kpiDescription("Clics")
-                                        .type("Cantidad")
-                                        .value(clickCount.doubleValue())
-                                        .status("A")
-                                        .build();
-
-                                return kpiRepository.save(clicksKpi);
-                            });
-                })
+                // Acumulador formato -> campaignSubId -> clics (collect es secuencial)
+                .collect(ClickFormatCounts::new, (counts, click) -> counts.add(click.getUrl(),
+                        utmParserService.parseUrl(click.getUrl()), formats))
+                .flatMap(counts -> pipelineMetrics.kpisWritten(MAILING_FORMATOS, kpiRepository.upsertAll(
+                        pipelineMetrics.kpisProduced(MAILING_FORMATOS, Flux.fromIterable(counts.countsByFormat.entrySet())
+                                .flatMap(formatEntry -> {
+                                    String kpiId = MailingFormats.CLICK_KPIS_BY_FORMAT.get(formatEntry.getKey());
+                                    return Flux.fromIterable(formatEntry.getValue().entrySet())
+                                            // KPI de clics del formato (MCC, MFC, MBC...)
+                                            .map(entry -> Kpi.builder()
+                                                    .campaignSubId(entry.getKey())
+                                                    .kpiId(kpiId)
+                                                    .kpiDescription("Clics")
+                                                    .type("Cantidad")
+                                                    .value(entry.getValue().doubleValue())
+                                                    .status("A")
+                                                    .period(period)
+                                                    .build());
+                                }))))
+                        .doOnNext(written -> log.info(LogMarkers.BUSINESS,
+                                "Clics por formato {} {}: {} clics con utm_campaign, {} sin utm_campaign válido (ej. {}), {} KPIs escritos",
+                                formats, period, counts.clicks, counts.invalid, counts.invalidSample, written)))
                 .then()
-                .doOnSuccess(v -> log.info("Procesamiento de KPIs de Mailing Feed completado"))
-                .doOnError(e -> log.error("Error al procesar KPIs de Mailing Feed", e));
+                .doOnError(e -> log.error("Error al procesar KPIs de clics por formato {}", formats, e));
     }
 
-    @Override
-    public Mono<Void> processMailingBodyKpis(LocalDate startDate, LocalDate endDate) {
-        log.info("Procesando KPIs de Mailing Body para el periodo: {} - {}", startDate, endDate);
+    /**
+     * Aperturas, clics y envíos sumados de los sendID de una campaña
+     */
+    private static class CampaignCounts {
+        private String providerId;
+        private long opens;
+        private long clicks;
+        private long sents;
 
-        LocalDateTime startDateTime = startDate.atStartOfDay();
-        LocalDateTime endDateTime = endDate.atTime(LocalTime.MAX);
+        void add(String sendProviderId, long sendOpens, long sendClicks, long sendSents) {
+            if (providerId == null) {
+                providerId = sendProviderId;
+            }
+            opens += sendOpens;
+            clicks += sendClicks;
+            sents += sendSents;
+        }
+    }
 
-        // Similar a Mailing Cabecera pero para formato MB
-        return salesforceClicksRepository.findByDateRange(startDateTime, endDateTime)
-                .filter(click -> click.getUrl() != null && click.getUrl().contains("utm_campaign"))
-                .flatMap(click ->
-                        utmParserService.extractMetadataFromUrl(click.getUrl())
-                                .filter(metadata -> "MB".equals(metadata.getFormat()))
-                                .map(metadata -> {
-                                    // Agrupamos por campaignSubId
-                                    return Map.entry(metadata.getCampaignSubId(), click);
-                                })
-                )
-                .groupBy(Map.Entry::getKey)
-                .flatMap(group -> {
-                    String campaignSubId = group.key();
-                    return group.count()
-                            .flatMap(clickCount -> {
-                                // Guardar KPI de clics (MBC)
-                                Kpi clicksKpi = Kpi.builder()
-                                        .campaignSubId(campaignSubId)
-                                        .kpiId("MBC")
-                                        .kpiDescription("Clics")
-                                        .type("Cantidad")
-                                        .value(clickCount.doubleValue())
-                                        .status("A")
-                                        .build();
+    /**
+     * Conteos de un recorrido de clics; las URL sin utm_campaign válido se cuentan y se conserva
+     * una de ejemplo en lugar de registrarlas una a una
+     */
+    private static class ClickFormatCounts {
+        private final Map<String, Map<String, Long>> countsByFormat = new HashMap<>();
+        private long clicks;
+        private long invalid;
+        private String invalidSample;
 
-                                return kpiRepository.save(clicksKpi);
-                            });
-                })
-                .then()
-                .doOnSuccess(v -> log.info("Procesamiento de KPIs de Mailing Body completado"))
-                .doOnError(e -> log.error("Error al procesar KPIs de Mailing Body", e));
+        void add(String url, CampaignMetadata metadata, Set<String> formats) {
+            clicks++;
+            if (metadata == null) {
+                invalid++;
+                if (invalidSample == null) {
+                    invalidSample = url;
+                }
+                return;
+            }
+            if (formats.contains(metadata.getFormat())) {
+                countsByFormat.computeIfAbsent(metadata.getFormat(), format -> new HashMap<>())
+                        .merge(metadata.getCampaignSubId(), 1L, Long::sum);
+            }
+        }
     }
-}
\ No newline at end of file
+}
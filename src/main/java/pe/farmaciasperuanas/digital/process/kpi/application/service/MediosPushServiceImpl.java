@@ -3,22 +3,21 @@ package pe.farmaciasperuanas.digital.process.kpi.application.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
-import org.springframework.data.mongodb.core.query.Criteria;
-import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Kpi;
-import pe.farmaciasperuanas.digital.process.kpi.domain.entity.SalesforcePush;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.KpiPeriod;
 import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.KpiRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.SalesforcePushRepository;
 import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.MediosPushService;
 import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.UtmParserService;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
@@ -26,97 +25,30 @@ import java.util.Map;
 @Slf4j
 public class MediosPushServiceImpl implements MediosPushService {
 
-    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private static final String SOURCE_PUSH = "salesforce_push";
+    private static final String PUSH = "push";
+
+    // Prefijo de los KPIs de cada canal de push
+    private static final Map<String, String> KPI_PREFIX_BY_CHANNEL = Map.of(
+            SalesforcePushRepository.CHANNEL_APP, "PA",
+            SalesforcePushRepository.CHANNEL_WEB, "PW");
+
+    private final SalesforcePushRepository salesforcePushRepository;
     private final KpiRepository kpiRepository;
     private final UtmParserService utmParserService;
+    private final KpiPipelineMetrics pipelineMetrics;
+
+    @Value("${kpi.push-channels.lookback-days:3}")
+    private int channelLookbackDays; // Días hacia atrás revisados en busca de documentos sin canal
+
+    @Value("${kpi.push-channels.backfill-batch:5000}")
+    private int channelBackfillBatch; // Documentos por lote del backfill de canal
 
     @Override
     public Mono<Void> processPushAppKpis(LocalDate startDate, LocalDate endDate) {
         log.info("Procesando KPIs de Push App para el periodo: {} - {}", startDate, endDate);
 
-        LocalDateTime startDateTime = startDate.atStartOfDay();
-        LocalDateTime endDateTime = endDate.atTime(LocalTime.MAX);
-
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-
-        // Crear consulta para buscar datos de push app en el rango de fechas
-        Query query = new Query(Criteria.where("FechaProceso")
-                .gte(startDate.format(formatter))
-                .lte(endDate.format(formatter))
-                .and("AppName").exists(true));
-
-        Map<String, Integer> sentCountByMessageName = new HashMap<>();
-        Map<String, Integer> openedCountByMessageName = new HashMap<>();
-
-        // 1. Obtener y agrupar datos de push
-        return reactiveMongoTemplate.find(query, SalesforcePush.class, "salesforce_push")
-                .doOnNext(push -> log.debug("Procesando push: {}", push.getMessageName()))
-                .groupBy(SalesforcePush::getMessageName)
-                .flatMap(group -> {
-                    String messageName = group.key();
-
-                    return group.collectList()
-                            .flatMap(pushList -> {
-                                int sentCount = pushList.size();
-                                int openedCount = (int) pushList.stream()
-                                        .filter(push -> push.getMessageOpened() != null && push.getMessageOpened())
-                                        .count();
-
-                                sentCountByMessageName.put(messageName, sentCount);
-                                openedCountByMessageName.put(messageName, openedCount);
-
-                                // Extraer campaignId del nombre del mensaje
-                                return extractCampaignIdFromMessageName(messageName)
-                                        .map(campaignId -> Map.entry(campaignId, messageName));
-                            });
-                })
-                .flatMap(entry -> {
-                    String campaignId = entry.getKey();
-                    String messageName = entry.getValue();
-
-                    // Obtener conteos para este mensaje
-                    int sentCount = sentCountByMessageName.getOrDefault(messageName, 0);
-                    int openedCount = openedCountByMessageName.getOrDefault(messageName, 0);
-
-                    // Calcular tasa de apertura
-                    double openRate = sentCount > 0 ? (double) openedCount / sentCount * 100 : 0;
-
-                    // Crear KPIs
-                    Kpi sentKpi = Kpi.builder()
-                            .campaignId(campaignId)
-                            .kpiId("PA-A")
-                            .kpiDescription("Alcance (Envíos)")
-                            .type("Cantidad")
-                            .value((double) sentCount)
-                            .status("A")
-                            .build();
-
-                    Kpi openedKpi = Kpi.builder()
-                            .campaignId(campaignId)
-                            .kpiId("PA-I")
-                            .kpiDescription("Impresiones (Aperturas)")
-                            .type("Cantidad")
-                            .value((double) openedCount)
-                            .status("A")
-                            .build();
-
-                    Kpi openRateKpi = Kpi.builder()
-                            .campaignId(campaignId)
-                            .kpiId("PA-OR")
-                            .kpiDescription("Open Rate (OR)")
-                            .type("Porcentaje")
-                            .value(openRate)
-                            .status("A")
-                            .build();
-
-                    // Guardar KPIs
-                    return Mono.when(
-                            kpiRepository.save(sentKpi),
-                            kpiRepository.save(openedKpi),
-                            kpiRepository.save(openRateKpi)
-                    );
-                })
-                .then()
+        return processPushKpis(startDate, endDate, List.of(SalesforcePushRepository.CHANNEL_APP))
                 .doOnSuccess(v -> log.info("Procesamiento de KPIs de Push App completado"))
                 .doOnError(e -> log.error("Error al procesar KPIs de Push App", e));
     }
@@ -125,105 +57,134 @@ public class MediosPushServiceImpl implements MediosPushService {
     public Mono<Void> processPushWebKpis(LocalDate startDate, LocalDate endDate) {
         log.info("Procesando KPIs de Push Web para el periodo: {} - {}", startDate, endDate);
 
-        LocalDateTime startDateTime = startDate.atStartOfDay();
-        LocalDateTime endDateTime = endDate.atTime(LocalTime.MAX);
-
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-
-        // Crear consulta para buscar datos de push web en el rango de fechas
-        Query query = new Query(Criteria.where("FechaProceso")
-                .gte(startDate.format(formatter))
-                .lte(endDate.format(formatter))
-                .and("MessageName").regex(".*web.*", "i")); // Filtro básico para push web
+        return processPushKpis(startDate, endDate, List.of(SalesforcePushRepository.CHANNEL_WEB))
+                .doOnSuccess(v -> log.info("Procesamiento de KPIs de Push Web completado"))
+                .doOnError(e -> log.error("Error al procesar KPIs de Push Web", e));
+    }
 
-        Map<String, Integer> sentCountByMessageName = new HashMap<>();
-        Map<String, Integer> openedCountByMessageName = new HashMap<>();
+    @Override
+    public Mono<Void> processPushKpis(LocalDate startDate, LocalDate endDate) {
+        log.info("Procesando KPIs de Push App y Push Web para el periodo: {} - {}", startDate, endDate);
 
-        return reactiveMongoTemplate.find(query, SalesforcePush.class, "salesforce_push")
-                .doOnNext(push -> log.debug("Procesando push web: {}", push.getMessageName()))
-                .groupBy(SalesforcePush::getMessageName)
-                .flatMap(group -> {
-                    String messageName = group.key();
+        return processPushKpis(startDate, endDate, KPI_PREFIX_BY_CHANNEL.keySet())
+                .doOnSuccess(v -> log.info("Procesamiento de KPIs de Push App y Push Web completado"))
+                .doOnError(e -> log.error("Error al procesar KPIs de Push App y Push Web", e));
+    }
 
-                    return group.collectList()
-                            .flatMap(pushList -> {
-                                int sentCount = pushList.size();
-                                int openedCount = (int) pushList.stream()
-                                        .filter(push -> push.getMessageOpened() != null && push.getMessageOpened())
-                                        .count();
+    @Override
+    public Mono<Long> classifyRecentPushChannels() {
+        LocalDate today = LocalDate.now();
+        return salesforcePushRepository.classifyChannels(today.minusDays(channelLookbackDays), today)
+                .doOnNext(classified -> {
+                    if (classified > 0) {
+                        log.info("Canal guardado en {} documentos de push recientes", classified);
+                    }
+                });
+    }
 
-                                sentCountByMessageName.put(messageName, sentCount);
-                                openedCountByMessageName.put(messageName, openedCount);
+    @Override
+    public Mono<Long> backfillPushChannels() {
+        log.info("Iniciando backfill de canal en documentos de push");
+        return salesforcePushRepository.backfillChannels(channelBackfillBatch);
+    }
 
-                                // Extraer campaignId del nombre del mensaje
-                                return extractCampaignIdFromMessageName(messageName)
-                                        .map(campaignId -> Map.entry(campaignId, messageName));
-                            });
+    private Mono<Void> processPushKpis(LocalDate startDate, LocalDate endDate, Collection<String> channels) {
+        String period = KpiPeriod.of(startDate, endDate);
+
+        // MongoDB agrupa por el canal guardado y MessageName; el heap solo ve una fila por mensaje. Los documentos
+        // que aún no tienen canal se suman cuando classifyRecentPushChannels los clasifica y el periodo se reprocesa
+        Flux<Kpi> kpis = pipelineMetrics.rowsRead(SOURCE_PUSH, salesforcePushRepository.countByMessageName(startDate, endDate, channels),
+                count -> count.getSentCount() != null ? count.getSentCount() : 0)
+                // Los mensajes de una misma campaña y canal comparten la llave natural del KPI; se suman
+                // antes de escribir para que cada llave tenga un solo upsert en el bulk
+                .collect(() -> new LinkedHashMap<String, PushCounts>(), (countsByCampaign, count) -> {
+                    String campaignId = extractCampaignIdFromMessageName(count.getMessageName());
+                    if (campaignId != null) {
+                        countsByCampaign.computeIfAbsent(count.getChannel() + "|" + campaignId,
+                                        key -> new PushCounts(count.getChannel(), campaignId))
+                                .add(count.getSentCount(), count.getOpenedCount());
+                    }
                 })
-                .flatMap(entry -> {
-                    String campaignId = entry.getKey();
-                    String messageName = entry.getValue();
-
-                    // Obtener conteos para este mensaje
-                    int sentCount = sentCountByMessageName.getOrDefault(messageName, 0);
-                    int openedCount = openedCountByMessageName.getOrDefault(messageName, 0);
+                .flatMapIterable(countsByCampaign -> countsByCampaign.values())
+                .flatMapIterable(counts -> {
+                    String kpiPrefix = KPI_PREFIX_BY_CHANNEL.get(counts.channel);
 
                     // Calcular tasa de apertura
-                    double openRate = sentCount > 0 ? (double) openedCount / sentCount * 100 : 0;
+                    double openRate = counts.sent > 0 ? (double) counts.opened / counts.sent * 100 : 0;
 
                     // Crear KPIs
                     Kpi sentKpi = Kpi.builder()
-                            .campaignId(campaignId)
-                            .kpiId("PW-A")
+                            .campaignId(counts.campaignId)
+                            .kpiId(kpiPrefix + "-A")
                             .kpiDescription("Alcance (Envíos)")
                             .type("Cantidad")
-                            .value((double) sentCount)
+                            .value((double) counts.sent)
                             .status("A")
+                            .period(period)
                             .build();
 
                     Kpi openedKpi = Kpi.builder()
-                            .campaignId(campaignId)
-                            .kpiId("PW-I")
+                            .campaignId(counts.campaignId)
+                            .kpiId(kpiPrefix + "-I")
                             .kpiDescription("Impresiones (Aperturas)")
                             .type("Cantidad")
-                            .value((double) openedCount)
+                            .value((double) counts.opened)
                             .status("A")
+                            .period(period)
                             .build();
 
                     Kpi openRateKpi = Kpi.builder()
-                            .campaignId(campaignId)
-                            .kpiId("PW-OR")
+                            .campaignId(counts.campaignId)
+                            .kpiId(kpiPrefix + "-OR")
                             .kpiDescription("Open Rate (OR)")
                             .type("Porcentaje")
                             .value(openRate)
+                            .numerator((double) counts.opened)
+                            .denominator((double) counts.sent)
                             .status("A")
+                            .period(period)
                             .build();
 
-                    // Guardar KPIs
-                    return Mono.when(
-                            kpiRepository.save(sentKpi),
-                            kpiRepository.save(openedKpi),
-                            kpiRepository.save(openRateKpi)
-                    );
-                })
-                .then()
-                .doOnSuccess(v -> log.info("Procesamiento de KPIs de Push Web completado"))
-                .doOnError(e -> log.error("Error al procesar KPIs de Push Web", e));
+                    return List.of(sentKpi, openedKpi, openRateKpi);
+                });
+
+        // Guardar KPIs con escrituras bulk idempotentes
+        return pipelineMetrics.kpisWritten(PUSH, kpiRepository.upsertAll(
+                        pipelineMetrics.kpisProduced(PUSH, kpis)))
+                .doOnNext(written -> log.info(LogMarkers.BUSINESS, "Push {} {}: {} KPIs escritos",
+                        channels, period, written))
+                .then();
     }
 
-    private Mono<String> extractCampaignIdFromMessageName(String messageName) {
+    private String extractCampaignIdFromMessageName(String messageName) {
         // Ejemplo de formato:
         // 20250305_sfmc_cindi_do_mifarma_std_compra_pautareg_wellness_app_abierto_varios_omega3_push
         if (messageName == null || messageName.isEmpty()) {
-            return Mono.empty();
+            return null;
         }
 
-        String[] parts = messageName.split("_");
-        if (parts.length > 0) {
-            // El campaignId suele estar al inicio (fecha YYYYMMDD)
-            return Mono.just(parts[0]);
+        // El campaignId suele estar al inicio (fecha YYYYMMDD)
+        int separator = messageName.indexOf('_');
+        return separator >= 0 ? messageName.substring(0, separator) : messageName;
+    }
+
+    /**
+     * Envíos y aperturas sumados de los mensajes de una campaña en un canal
+     */
+    private static class PushCounts {
+        private final String channel;
+        private final String campaignId;
+        private long sent;
+        private long opened;
+
+        PushCounts(String channel, String campaignId) {
+            this.channel = channel;
+            this.campaignId = campaignId;
         }
 
-        return Mono.empty();
+        void add(Long sentCount, Long openedCount) {
+            sent += sentCount != null ? sentCount : 0;
+            opened += openedCount != null ? openedCount : 0;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,174 @@
+package pe.farmaciasperuanas.digital.process.kpi.application.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.WorkUnit;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.KpiRollupRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.WorkUnitRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.MediosMailingService;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.MediosPushService;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.MetricsService;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.PartitionedProcessingService;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PartitionedProcessingServiceImpl implements PartitionedProcessingService {
+
+    private static final List<String> SOURCES = List.of("MAILING_PADRE", "MAILING_FORMATOS", "PUSH");
+
+    private final WorkUnitRepository workUnitRepository;
+    private final KpiRollupRepository kpiRollupRepository;
+    private final MediosMailingService mediosMailingService;
+    private final MediosPushService mediosPushService;
+    private final MetricsService metricsService;
+    private final KpiReadCache kpiReadCache;
+
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+
+    private final String instanceId = System.getenv().getOrDefault("HOSTNAME", "kpi")
+            + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+    @Value("${kpi.partitions.concurrency:2}")
+    private int concurrency; // Unidades procesadas en paralelo por instancia
+
+    @Value("${kpi.partitions.lease:900000}")
+    private long leaseMillis; // Lease de una unidad; vencido, otra réplica puede reclamarla
+
+    @Value("${kpi.partitions.max-attempts:3}")
+    private int maxAttempts; // Intentos antes de marcar la unidad como FAILED
+
+    @Override
+    public Mono<Long> enqueue(LocalDate startDate, LocalDate endDate) {
+        if (startDate == null || endDate == null || startDate.isAfter(endDate)) {
+            log.error("Fechas no válidas para encolar: start={}, end={}", startDate, endDate);
+            return Mono.error(new IllegalArgumentException("Fechas no válidas"));
+        }
+
+        List<WorkUnit> workUnits = new ArrayList<>();
+        for (LocalDate day = startDate; !day.isAfter(endDate); day = day.plusDays(1)) {
+            for (String source : SOURCES) {
+                workUnits.add(WorkUnit.builder()
+                        .id(source + "_" + day)
+                        .source(source)
+                        .day(day)
+                        .build());
+            }
+        }
+
+        return workUnitRepository.enqueue(workUnits)
+                .doOnSuccess(count -> log.info("Encoladas {} unidades de trabajo para el periodo: {} - {}",
+                        count, startDate, endDate));
+    }
+
+    @Override
+    public Mono<Long> drain() {
+        return Mono.defer(() -> {
+            if (!draining.compareAndSet(false, true)) {
+                return Mono.just(0L);
+            }
+
+            LocalDateTime since = LocalDateTime.now();
+            return workUnitRepository.expire(maxAttempts)
+                    .doOnNext(expired -> {
+                        if (expired > 0) {
+                            log.warn("Unidades con lease vencido marcadas como FAILED: {}", expired);
+                        }
+                    })
+                    .thenMany(Flux.range(0, concurrency))
+                    .flatMap(worker -> claimAndProcess().expand(processed -> claimAndProcess()))
+                    .collectList()
+                    .flatMap(units -> {
+                        if (units.isEmpty()) {
+                            return Mono.just(0L);
+                        }
+
+                        // Rollups semanales y mensuales una sola vez por bucket, cuando ya terminaron
+                        // todas las unidades; recalcularlos por unidad repetía el mes completo
+                        Set<LocalDate> days = units.stream()
+                                .map(WorkUnit::getDay)
+                                .collect(Collectors.toCollection(TreeSet::new));
+                        return kpiRollupRepository.refresh(days)
+                                .then(Mono.defer(() -> kpiReadCache.evictTouchedSince(since)))
+                                .then(Mono.defer(() -> metricsService.calculateGeneralMetrics(since)))
+                                .doOnSuccess(v -> log.info("Unidades procesadas por {}: {}", instanceId, units.size()))
+                                .thenReturn((long) units.size());
+                    })
+                    .doFinally(signal -> draining.set(false));
+        });
+    }
+
+    // Reclama una unidad y la procesa; vacío cuando no quedan unidades disponibles
+    private Mono<WorkUnit> claimAndProcess() {
+        return workUnitRepository.claim(instanceId, Duration.ofMillis(leaseMillis), maxAttempts)
+                .flatMap(workUnit -> {
+                    log.info("Procesando unidad {} (intento {})", workUnit.getId(), workUnit.getAttempts());
+                    LocalDateTime startedAt = LocalDateTime.now();
+                    return Mono.firstWithSignal(process(workUnit), renewLease(workUnit))
+                            .then(Mono.defer(() -> kpiReadCache.evictTouchedSince(startedAt)))
+                            .then(Mono.defer(() -> workUnitRepository.complete(workUnit)))
+                            .onErrorResume(e -> {
+                                log.error("Error procesando unidad {}: {}", workUnit.getId(), e.getMessage());
+                                return workUnitRepository.fail(workUnit, e.getMessage(), maxAttempts);
+                            })
+                            .defaultIfEmpty(workUnit);
+                });
+    }
+
+    // Renueva el lease a un tercio de su duración mientras la unidad se procesa; si otra réplica la
+    // reclamó, termina con error para cancelar el procesamiento
+    private Mono<Void> renewLease(WorkUnit workUnit) {
+        Duration lease = Duration.ofMillis(leaseMillis);
+        Duration interval = lease.dividedBy(3);
+        AtomicLong renewedAt = new AtomicLong(System.nanoTime());
+        return Flux.interval(interval, interval)
+                .concatMap(tick -> workUnitRepository.renew(workUnit, lease)
+                        .doOnNext(renewed -> {
+                            if (renewed) {
+                                renewedAt.set(System.nanoTime());
+                            }
+                        })
+                        .onErrorResume(e -> {
+                            // Un fallo de MongoDB no pierde el lease mientras no haya vencido desde la última renovación
+                            log.warn("No se pudo renovar el lease de la unidad {}: {}", workUnit.getId(), e.getMessage());
+                            return Mono.just(System.nanoTime() - renewedAt.get() < lease.toNanos());
+                        }))
+                .filter(renewed -> !renewed)
+                .next()
+                .flatMap(lost -> Mono.error(new IllegalStateException("Lease perdido para la unidad " + workUnit.getId())));
+    }
+
+    private Mono<Void> process(WorkUnit workUnit) {
+        LocalDate day = workUnit.getDay();
+        switch (workUnit.getSource()) {
+            case "MAILING_PADRE":
+                return mediosMailingService.processMailingPadreKpis(day, day);
+            case "MAILING_FORMATOS":
+                return mediosMailingService.processMailingFormatKpis(day, day);
+            case "PUSH":
+                return mediosPushService.processPushKpis(day, day);
+            case "PUSH_APP":
+                return mediosPushService.processPushAppKpis(day, day);
+            case "PUSH_WEB":
+                return mediosPushService.processPushWebKpis(day, day);
+            default:
+                return Mono.error(new IllegalArgumentException("Fuente no reconocida: " + workUnit.getSource()));
+        }
+    }
+}
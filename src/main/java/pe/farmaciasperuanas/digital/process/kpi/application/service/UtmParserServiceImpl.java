@@ -1,97 +1,162 @@
 package pe.farmaciasperuanas.digital.process.kpi.application.service;
 
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import pe.farmaciasperuanas.digital.process.kpi.domain.entity.CampaignMetadata;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.SendCampaign;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.SendCampaignRepository;
 import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.UtmParserService;
 import reactor.core.publisher.Mono;
 
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.util.Arrays;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class UtmParserServiceImpl implements UtmParserService {
 
-    private static final Pattern UTM_CAMPAIGN_PATTERN = Pattern.compile("utm_campaign=([^&?]+)");
+    private static final String UTM_CAMPAIGN_PARAM = "utm_campaign=";
+
+    private final SendCampaignRepository sendCampaignRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${kpi.send-campaigns.cache.max-size:100000}")
+    private long sendCampaignCacheMaxSize; // Máximo de sendID en caché
+
+    @Value("${kpi.send-campaigns.cache.ttl:3600}")
+    private long sendCampaignCacheTtlSeconds; // Vigencia (s) de un sendID en caché
+
+    @Value("${kpi.utm-campaigns.cache.max-size:10000}")
+    private long utmCampaignCacheMaxSize; // Máximo de valores utm_campaign parseados en memoria
+
+    private AsyncLoadingCache<Integer, SendCampaign> sendCampaignCache;
+
+    private Cache<String, Optional<CampaignMetadata>> utmCampaignCache;
+
+    @PostConstruct
+    void initCaches() {
+        utmCampaignCache = Caffeine.newBuilder()
+                .maximumSize(utmCampaignCacheMaxSize)
+                .recordStats()
+                .build();
+
+        sendCampaignCache = Caffeine.newBuilder()
+                .maximumSize(sendCampaignCacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(sendCampaignCacheTtlSeconds))
+                .recordStats()
+                .buildAsync(new AsyncCacheLoader<>() {
+                    @Override
+                    public CompletableFuture<SendCampaign> asyncLoad(Integer sendId, Executor executor) {
+                        return loadSendCampaigns(Set.of(sendId)).map(campaigns -> campaigns.get(sendId)).toFuture();
+                    }
+
+                    @Override
+                    public CompletableFuture<Map<Integer, SendCampaign>> asyncLoadAll(
+                            Set<? extends Integer> sendIds, Executor executor) {
+                        return loadSendCampaigns(sendIds).toFuture();
+                    }
+                });
+
+        CaffeineCacheMetrics.monitor(meterRegistry, utmCampaignCache, "kpi.utm-campaigns");
+        CaffeineCacheMetrics.monitor(meterRegistry, sendCampaignCache, "kpi.send-campaigns");
+    }
 
     @Override
     public Mono<CampaignMetadata> extractMetadataFromUrl(String url) {
+        return Mono.justOrEmpty(parseUrl(url));
+    }
+
+    @Override
+    public Mono<CampaignMetadata> extractMetadataFromUtmCampaign(String utmCampaign) {
+        return Mono.justOrEmpty(parseUtmCampaign(utmCampaign));
+    }
+
+    @Override
+    public CampaignMetadata parseUrl(String url) {
         if (url == null || url.isEmpty()) {
-            return Mono.empty();
+            return null;
         }
 
-        try {
-            // Extraer el parámetro utm_campaign de la URL
-            Matcher matcher = UTM_CAMPAIGN_PATTERN.matcher(url);
-            if (matcher.find()) {
-                String utmCampaign = matcher.group(1);
-                return extractMetadataFromUtmCampaign(utmCampaign);
-            }
+        // Extraer el parámetro utm_campaign de la URL (hasta el siguiente '&' o '?'); las URL sin
+        // utm_campaign válido no se registran una a una, el llamador las resume por lote
+        int start = url.indexOf(UTM_CAMPAIGN_PARAM);
+        if (start < 0 || start + UTM_CAMPAIGN_PARAM.length() == url.length()) {
+            return null;
+        }
+        start += UTM_CAMPAIGN_PARAM.length();
 
-            log.warn("No se encontró parámetro utm_campaign en la URL: {}", url);
-            return Mono.empty();
-        } catch (Exception e) {
-            log.error("Error al extraer metadatos de la URL: {}", url, e);
-            return Mono.empty();
+        int end = start;
+        while (end < url.length() && url.charAt(end) != '&' && url.charAt(end) != '?') {
+            end++;
+        }
+        if (end == start) {
+            return null;
         }
+
+        return parseUtmCampaign(url.substring(start, end));
     }
 
     @Override
-    public Mono<CampaignMetadata> extractMetadataFromUtmCampaign(String utmCampaign) {
+    public CampaignMetadata parseUtmCampaign(String utmCampaign) {
         if (utmCampaign == null || utmCampaign.isEmpty()) {
-            return Mono.empty();
+            return null;
         }
 
-        try {
-            // Ejemplo de formato:
-            // 20250125_do_cindi_mifarma_estandar_compra_abierto_web_pautaregular_farma_neutrogena_011592_body
-
-            String[] parts = utmCampaign.split("_");
-            if (parts.length < 3) {
-                log.warn("Formato de utm_campaign no válido: {}", utmCampaign);
-                return Mono.empty();
-            }
-
-            // El formato (MC, MF, MB) suele estar al final
-            String format = parts[parts.length - 1];
-
-            // El campaignId suele estar al inicio (fecha YYYYMMDD)
-            String campaignId = parts[0];
-
-            // El campaignSubId es la combinación de campaignId y formato
-            String campaignSubId = campaignId + format;
-
-            // El medium suele ser "medio propios" para mailing
-            String medium = "medio propios";
-
-            // La plataforma suele ser "Salesforce" para mailing
-            String platform = "Salesforce";
+        // Las mismas campañas se repiten en millones de clics; se parsea una vez por valor
+        return utmCampaignCache.get(utmCampaign, this::scanUtmCampaign).orElse(null);
+    }
 
-            // El providerId requeriría una consulta adicional a la base de datos
-            // Por ahora, lo dejamos vacío
-            String providerId = "";
+    private Optional<CampaignMetadata> scanUtmCampaign(String utmCampaign) {
+        // Ejemplo de formato:
+        // 20250125_do_cindi_mifarma_estandar_compra_abierto_web_pautaregular_farma_neutrogena_011592_body
 
-            return Mono.just(CampaignMetadata.builder()
-                    .campaignId(campaignId)
-                    .campaignSubId(campaignSubId)
-                    .format(format)
-                    .medium(medium)
-                    .platform(platform)
-                    .providerId(providerId)
-                    .build());
+        // Se ignoran los '_' finales, igual que String.split("_")
+        int end = utmCampaign.length();
+        while (end > 0 && utmCampaign.charAt(end - 1) == '_') {
+            end--;
+        }
 
-        } catch (Exception e) {
-            log.error("Error al extraer metadatos de utm_campaign: {}", utmCampaign, e);
-            return Mono.empty();
+        int firstSeparator = utmCampaign.indexOf('_');
+        int lastSeparator = utmCampaign.lastIndexOf('_', end - 1);
+        if (end == 0 || lastSeparator < 0 || firstSeparator == lastSeparator) {
+            return Optional.empty();
         }
+
+        // El formato (MC, MF, MB) suele estar al final
+        String format = utmCampaign.substring(lastSeparator + 1, end);
+
+        // El campaignId suele estar al inicio (fecha YYYYMMDD)
+        String campaignId = utmCampaign.substring(0, firstSeparator);
+
+        return Optional.of(CampaignMetadata.builder()
+                .campaignId(campaignId)
+                // El campaignSubId es la combinación de campaignId y formato
+                .campaignSubId(campaignId + format)
+                .format(format)
+                // El medium suele ser "medio propios" para mailing
+                .medium("medio propios")
+                // La plataforma suele ser "Salesforce" para mailing
+                .platform("Salesforce")
+                // El providerId se resuelve por sendID (resolveSendIds)
+                .providerId("")
+                .build());
     }
 
     @Override
@@ -100,11 +165,41 @@ public class UtmParserServiceImpl implements UtmParserService {
             return Mono.empty();
         }
 
-        // Esta implementación es provisional y requerirá una consulta a la base de datos
-        // para obtener el campaignId asociado al sendId.
-        // Por ahora, retornamos un valor dummy para testing.
+        return Mono.fromFuture(sendCampaignCache.get(sendId))
+                .map(SendCampaign::getCampaignId);
+    }
+
+    @Override
+    public Mono<Map<Integer, SendCampaign>> resolveSendIds(Collection<Integer> sendIds) {
+        if (sendIds == null || sendIds.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+
+        // Los sendID que no están en caché se cargan juntos con un solo $in
+        return Mono.fromFuture(sendCampaignCache.getAll(sendIds));
+    }
 
-        log.warn("Implementación provisional para extractCampaignIdFromSendId. SendId: {}", sendId);
-        return Mono.just("202501" + (sendId % 100));
+    private Mono<Map<Integer, SendCampaign>> loadSendCampaigns(Set<? extends Integer> sendIds) {
+        return sendCampaignRepository.findBySendIds(new ArrayList<>(sendIds))
+                .filter(campaign -> campaign.getSendID() != null && campaign.getCampaignId() != null)
+                .collectMap(SendCampaign::getSendID, campaign -> campaign, HashMap::new)
+                .map(campaigns -> {
+                    // Los sendID sin campaña registrada también se guardan en caché para no consultarlos en cada lote
+                    int unresolved = 0;
+                    for (Integer sendId : sendIds) {
+                        if (!campaigns.containsKey(sendId)) {
+                            unresolved++;
+                            campaigns.put(sendId, SendCampaign.builder()
+                                    .sendID(sendId)
+                                    .campaignId(String.valueOf(sendId))
+                                    .build());
+                        }
+                    }
+                    if (unresolved > 0) {
+                        log.warn(LogMarkers.BUSINESS, "{} de {} sendID sin campaña registrada en salesforce_send_campaigns",
+                                unresolved, sendIds.size());
+                    }
+                    return campaigns;
+                });
     }
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "kpi_job_locks")
+public class JobLock {
+    @Id
+    private String id; // Nombre del job
+    private String owner; // Instancia que tiene el lease
+    private LocalDateTime lockedAt;
+    private LocalDateTime lockedUntil; // Vencimiento del lease
+}
@@ -0,0 +1,31 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "kpi_job_runs")
+public class JobRun {
+    @Id
+    private String id;
+    private String jobName;
+    private String owner; // Instancia que ejecutó el job
+    private String status; // RUNNING, COMPLETED, FAILED, FENCED (cancelado al perder el lease)
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private LocalDate rangeStart;
+    private LocalDate rangeEnd;
+    private Integer totalBatches;
+    private Integer failedBatches;
+    private String errorMessage;
+}
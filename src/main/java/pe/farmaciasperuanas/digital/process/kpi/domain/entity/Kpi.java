@@ -1,5 +1,6 @@
 package pe.farmaciasperuanas.digital.process.kpi.domain.entity;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -13,6 +14,7 @@ import java.time.LocalDateTime;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL) // Las consultas con proyección omiten los campos no solicitados
 @Document(collection = "kpi")
 public class Kpi {
     @Id
@@ -25,6 +27,10 @@ public class Kpi {
     private String type; // Cantidad, porcentaje
     private Double value;
     private String status; // A: activo / I: inactivo
+    private String period; // yyyy-MM-dd o yyyy-MM-dd/yyyy-MM-dd; en rollups, primer día de la semana o mes
+    private String granularity; // DAY / WEEK / MONTH
+    private Double numerator; // Solo en porcentajes: se suman para recalcular la tasa de un rango
+    private Double denominator;
     private LocalDateTime createdDate;
     private LocalDateTime updatedDate;
     private String createdUser;
@@ -0,0 +1,21 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "salesforce_send_campaigns")
+public class SendCampaign {
+    @Id
+    private String id;
+    private Integer sendID;
+    private String campaignId;
+    private String providerId;
+}
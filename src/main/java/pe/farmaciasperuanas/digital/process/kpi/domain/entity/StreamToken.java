@@ -0,0 +1,22 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "kpi_stream_tokens")
+public class StreamToken {
+    @Id
+    private String id; // Colección observada por el change stream
+    private String resumeToken; // Resume token en JSON extendido
+    private LocalDateTime updatedDate;
+}
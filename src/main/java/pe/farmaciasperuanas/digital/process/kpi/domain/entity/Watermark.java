@@ -0,0 +1,22 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "kpi_watermarks")
+public class Watermark {
+    @Id
+    private String id; // Colección origen: salesforce_opens, salesforce_clicks, salesforce_sents, salesforce_push
+    private LocalDateTime lastEventDate; // Último eventDate / FechaProceso procesado
+    private LocalDateTime updatedDate;
+}
@@ -0,0 +1,30 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "kpi_work_units")
+public class WorkUnit {
+    @Id
+    private String id; // source_yyyy-MM-dd
+    private String source; // MAILING_PADRE, MAILING_FORMATOS, PUSH
+    private LocalDate day;
+    private String status; // PENDING, CLAIMED, DONE, FAILED
+    private String owner; // Instancia que tiene el lease
+    private LocalDateTime leaseUntil;
+    private Integer attempts;
+    private String errorMessage;
+    private LocalDateTime createdDate;
+    private LocalDateTime updatedDate;
+}
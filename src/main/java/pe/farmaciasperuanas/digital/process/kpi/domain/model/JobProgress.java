@@ -0,0 +1,126 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.model;
+
+import lombok.Getter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * Avance de un procesamiento de KPIs. Viaja en el Context de Reactor para que los servicios
+ * registren lotes, eventos leídos y KPIs escritos sin recibirlo como parámetro.
+ */
+@Getter
+public class JobProgress {
+
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+    public static final String CANCELLED = "CANCELLED";
+
+    private final String id;
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+    private final LocalDateTime submittedAt = LocalDateTime.now();
+    private volatile String status = PENDING;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile String errorMessage;
+
+    private final AtomicInteger totalBatches = new AtomicInteger();
+    private final AtomicInteger startedBatches = new AtomicInteger();
+    private final AtomicInteger completedBatches = new AtomicInteger();
+    private final AtomicInteger failedBatches = new AtomicInteger();
+    private final AtomicLong rowsRead = new AtomicLong(); // Eventos de Salesforce leídos
+    private final AtomicLong kpisWritten = new AtomicLong(); // KPIs insertados o modificados
+
+    public JobProgress(String id, LocalDate startDate, LocalDate endDate) {
+        this.id = id;
+        this.startDate = startDate;
+        this.endDate = endDate;
+    }
+
+    // Retorna false si el job se canceló mientras esperaba
+    public synchronized boolean start() {
+        if (!PENDING.equals(status)) {
+            return false;
+        }
+        startedAt = LocalDateTime.now();
+        status = RUNNING;
+        return true;
+    }
+
+    // Retorna false si el job ya había terminado; el primer estado final es el que queda
+    public synchronized boolean finish(String finalStatus, String error) {
+        if (isFinished()) {
+            return false;
+        }
+        finishedAt = LocalDateTime.now();
+        errorMessage = error;
+        status = finalStatus;
+        return true;
+    }
+
+    public boolean isFinished() {
+        return COMPLETED.equals(status) || FAILED.equals(status) || CANCELLED.equals(status);
+    }
+
+    public void addBatches(int batches) {
+        totalBatches.addAndGet(batches);
+    }
+
+    // Retorna el número del lote iniciado, para los logs "lote i/n"
+    public int startBatch() {
+        return startedBatches.incrementAndGet();
+    }
+
+    public void completeBatch() {
+        completedBatches.incrementAndGet();
+    }
+
+    public void failBatch() {
+        failedBatches.incrementAndGet();
+    }
+
+    public double getRowsPerSecond() {
+        return perSecond(rowsRead.get());
+    }
+
+    public double getKpisPerSecond() {
+        return perSecond(kpisWritten.get());
+    }
+
+    private double perSecond(long count) {
+        if (startedAt == null) {
+            return 0;
+        }
+        LocalDateTime end = finishedAt != null ? finishedAt : LocalDateTime.now();
+        long millis = Duration.between(startedAt, end).toMillis();
+        return millis > 0 ? count * 1000.0 / millis : 0;
+    }
+
+    /**
+     * Suma a los eventos leídos del job en curso, si lo hay, el peso de cada elemento
+     * (1 por evento, o el conteo de una fila ya agregada en MongoDB).
+     */
+    public static <T> Flux<T> countRows(Flux<T> rows, ToLongFunction<T> weight) {
+        return rows.transformDeferredContextual((flux, context) -> context.<JobProgress>getOrEmpty(JobProgress.class)
+                .map(progress -> flux.doOnNext(row -> progress.rowsRead.addAndGet(weight.applyAsLong(row))))
+                .orElse(flux));
+    }
+
+    /**
+     * Suma a los KPIs escritos del job en curso, si lo hay, la cantidad retornada por la escritura.
+     */
+    public static Mono<Long> countWritten(Mono<Long> written) {
+        return written.transformDeferredContextual((mono, context) -> context.<JobProgress>getOrEmpty(JobProgress.class)
+                .map(progress -> mono.doOnNext(progress.kpisWritten::addAndGet))
+                .orElse(mono));
+    }
+}
@@ -0,0 +1,39 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.model;
+
+import java.time.LocalDate;
+
+/**
+ * Periodo que cubre un KPI; forma parte de su llave natural
+ * (campaignId, campaignSubId, kpiId, period).
+ */
+public final class KpiPeriod {
+
+    public static final String DAY = "DAY";
+    public static final String WEEK = "WEEK";
+    public static final String MONTH = "MONTH";
+
+    private KpiPeriod() {
+    }
+
+    /**
+     * Construye el periodo de un rango de fechas
+     * @param startDate Fecha de inicio
+     * @param endDate Fecha de fin
+     * @return "yyyy-MM-dd" si el rango es de un día, "yyyy-MM-dd/yyyy-MM-dd" en otro caso
+     */
+    public static String of(LocalDate startDate, LocalDate endDate) {
+        if (startDate.equals(endDate)) {
+            return startDate.toString();
+        }
+        return startDate + "/" + endDate;
+    }
+
+    /**
+     * Granularidad de un periodo construido con {@link #of(LocalDate, LocalDate)}
+     * @param period Periodo del KPI
+     * @return DAY si el periodo es de un día, null si es un rango
+     */
+    public static String granularityOf(String period) {
+        return period != null && period.indexOf('/') < 0 ? DAY : null;
+    }
+}
\ No newline at end of file
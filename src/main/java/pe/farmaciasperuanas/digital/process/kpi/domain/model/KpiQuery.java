@@ -0,0 +1,29 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Filtros, cursor y proyección de una consulta de KPIs; los filtros nulos no se aplican.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class KpiQuery {
+    private String campaignId;
+    private String campaignSubId;
+    private String providerId;
+    private String kpiId;
+    private String granularity; // DAY / WEEK / MONTH
+    private LocalDate startDate; // Periodo de los eventos
+    private LocalDate endDate;
+    private String after; // Id del último KPI de la página anterior
+    private int limit;
+    private List<String> fields; // Campos a retornar; vacío retorna todos
+}
@@ -0,0 +1,22 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Resumen de una ejecución de procesamiento de KPIs.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class KpiRunSummary {
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private int totalBatches;
+    private int failedBatches;
+}
@@ -0,0 +1,19 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.model;
+
+import java.util.Map;
+
+/**
+ * Formatos de mailing identificados en el utm_campaign de los clics.
+ */
+public final class MailingFormats {
+
+    // KPI de clics por formato de mailing; agregar un formato nuevo no agrega otra lectura de clics
+    public static final Map<String, String> CLICK_KPIS_BY_FORMAT = Map.of(
+            "MC", "MCC",
+            "MF", "MFC",
+            "MB", "MBC"
+    );
+
+    private MailingFormats() {
+    }
+}
@@ -0,0 +1,20 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Conteo de envíos y aperturas de push agrupados por canal y MessageName, calculado en MongoDB.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageCount {
+    private String channel; // app / web
+    private String messageName;
+    private Long sentCount;
+    private Long openedCount;
+}
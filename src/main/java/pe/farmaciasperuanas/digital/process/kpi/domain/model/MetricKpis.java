@@ -0,0 +1,18 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.model;
+
+import java.util.List;
+
+/**
+ * KPIs que alimentan las métricas generales de cada proveedor.
+ */
+public final class MetricKpis {
+
+    // KPI que almacena la inversión de una campaña
+    public static final String INVESTMENT_KPI_ID = "investment";
+
+    // KPIs de venta por medio y formato
+    public static final List<String> SALES_KPI_IDS = List.of("MP-V", "MCV", "MFV", "MBV", "PW-V", "PA-V");
+
+    private MetricKpis() {
+    }
+}
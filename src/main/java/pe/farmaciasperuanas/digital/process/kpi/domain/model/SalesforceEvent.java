@@ -0,0 +1,21 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Vista reducida de un evento de Salesforce (open, click o sent) con solo los campos que usan los KPIs.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesforceEvent {
+    private Integer sendID;
+    private String url; // Solo en clics
+    private LocalDateTime eventDate;
+}
@@ -0,0 +1,19 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Conteo de eventos de Salesforce agrupados por sendID, calculado en MongoDB.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SendIdCount {
+    private Integer sendID;
+    private Long count;
+    private Long uniqueCount;
+}
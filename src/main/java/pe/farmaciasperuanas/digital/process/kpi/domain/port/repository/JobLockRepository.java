@@ -0,0 +1,19 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.port.repository;
+
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.JobLock;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+public interface JobLockRepository {
+    /**
+     * Toma o renueva el lease de un job si está libre, vencido o ya es del mismo dueño
+     * @param jobName Nombre del job
+     * @param owner Instancia que solicita el lease
+     * @param lease Duración del lease
+     * @return Lock tomado, o vacío si otra instancia lo tiene
+     */
+    Mono<JobLock> acquire(String jobName, String owner, Duration lease);
+
+    Mono<Void> release(String jobName, String owner);
+}
@@ -0,0 +1,8 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.port.repository;
+
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.JobRun;
+import reactor.core.publisher.Mono;
+
+public interface JobRunRepository {
+    Mono<JobRun> save(JobRun jobRun);
+}
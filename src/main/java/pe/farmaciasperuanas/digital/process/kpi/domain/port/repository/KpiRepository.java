@@ -1,9 +1,13 @@
 package pe.farmaciasperuanas.digital.process.kpi.domain.port.repository;
 
 import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Kpi;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Metrics;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.KpiQuery;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 /**
  * Interface for running Spring Boot framework.<br/>
  * <b>Class</b>: Application<br/>
@@ -24,11 +28,86 @@ import java.time.LocalDate;
 
 public interface KpiRepository {
     Mono<Kpi> save(Kpi kpi);
+
+    /**
+     * Inserta o reemplaza KPIs por su llave natural (campaignId, campaignSubId, kpiId, period)
+     * usando escrituras bulk no ordenadas, agrupadas por tamaño y tiempo
+     * @param kpis KPIs a escribir
+     * @return Cantidad de documentos insertados o modificados
+     */
+    Mono<Long> upsertAll(Flux<Kpi> kpis);
+
+    /**
+     * Suma el valor de cada KPI ($inc) al documento con su misma llave natural, creándolo si no existe
+     * @param deltas KPIs cuyo valor es el incremento a aplicar
+     * @return Cantidad de documentos insertados o modificados
+     */
+    Mono<Long> incrementAll(Flux<Kpi> deltas);
     Mono<Kpi> findById(String id);
     Flux<Kpi> findByCampaignId(String campaignId);
     Flux<Kpi> findByCampaignIdAndKpiId(String campaignId, String kpiId);
     Mono<Kpi> updateValue(String id, Double value);
     Flux<Kpi> findByProviderId(String providerId);
     Flux<Kpi> findByDateRange(LocalDate startDate, LocalDate endDate);
+
+    /**
+     * KPIs diarios cuyos eventos ocurrieron en el rango (periodo del KPI, no fecha de procesamiento)
+     * @param startDate Fecha de inicio
+     * @param endDate Fecha de fin
+     * @return KPIs con granularidad DAY
+     */
+    Flux<Kpi> findByPeriodRange(LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Página de KPIs ordenada por periodo e id; los diarios se leen de kpi y los semanales o mensuales de kpi_rollups
+     * @param query Filtros, cursor (id del último KPI recibido) y campos a retornar
+     * @return KPIs de la página
+     */
+    Flux<Kpi> search(KpiQuery query);
+
     Flux<Kpi> findAll();
+
+    /**
+     * Proveedores con KPIs insertados o modificados desde la fecha indicada
+     * @param since Fecha desde la cual buscar cambios
+     * @return providerIds distintos
+     */
+    Flux<String> findProviderIdsUpdatedSince(LocalDateTime since);
+
+    /**
+     * Campañas con KPIs insertados o modificados desde la fecha indicada
+     * @param since Fecha desde la cual buscar cambios
+     * @return campaignIds distintos
+     */
+    Flux<String> findCampaignIdsUpdatedSince(LocalDateTime since);
+
+    /**
+     * Calcula en MongoDB las métricas generales (campañas activas, inversión y ventas) por proveedor
+     * @param providerIds Proveedores a calcular; null calcula todos
+     * @return Métricas por proveedor, sin totalInvestmentForBrand
+     */
+    Flux<Metrics> aggregateMetricsByProvider(Collection<String> providerIds);
+
+    /**
+     * Calcula en MongoDB las métricas por proveedor de los KPIs diarios del periodo
+     * @param startDate Fecha de inicio
+     * @param endDate Fecha de fin
+     * @return Métricas por proveedor, sin totalInvestmentForBrand
+     */
+    Flux<Metrics> aggregateMetricsByDateRange(LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Recalcula en kpi_campaign_totals la inversión y las ventas por (proveedor, campaña) a partir de los
+     * KPIs de las campañas indicadas
+     * @param campaignIds Campañas a recalcular; null recalcula todas
+     * @return Proveedores cuyos totales cambiaron, incluidos los que dejaron de tener alguna de esas campañas
+     */
+    Flux<String> refreshCampaignTotals(Collection<String> campaignIds);
+
+    /**
+     * Calcula las métricas generales por proveedor sumando sus totales de kpi_campaign_totals
+     * @param providerIds Proveedores a calcular; null calcula todos
+     * @return Métricas por proveedor, sin totalInvestmentForBrand
+     */
+    Flux<Metrics> aggregateMetricsFromCampaignTotals(Collection<String> providerIds);
 }
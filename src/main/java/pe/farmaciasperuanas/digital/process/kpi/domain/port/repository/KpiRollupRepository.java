@@ -0,0 +1,34 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.port.repository;
+
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Kpi;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+public interface KpiRollupRepository {
+    /**
+     * Recalcula desde los KPIs diarios los rollups semanales y mensuales que contienen el rango
+     * @param startDate Primer día modificado
+     * @param endDate Último día modificado
+     * @return Cantidad de rollups recalculados (semanas + meses)
+     */
+    Mono<Long> refresh(LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Recalcula una sola vez cada rollup semanal y mensual que contiene alguno de los días
+     * @param days Días modificados, no necesariamente contiguos
+     * @return Cantidad de rollups recalculados (semanas + meses)
+     */
+    Mono<Long> refresh(Collection<LocalDate> days);
+
+    /**
+     * Rollups cuya semana o mes empieza dentro del rango
+     * @param granularity WEEK o MONTH
+     * @param startDate Fecha de inicio
+     * @param endDate Fecha de fin
+     * @return KPIs pre-agregados con las tasas recalculadas desde numerador y denominador
+     */
+    Flux<Kpi> findByPeriodRange(String granularity, LocalDate startDate, LocalDate endDate);
+}
@@ -9,4 +9,19 @@ public interface MetricsRepository {
     Mono<Metrics> findByProviderId(String providerId);
     Flux<Metrics> findAll();
     Mono<Metrics> updateMetrics(Metrics metrics);
+
+    /**
+     * Inserta o actualiza las métricas de varios proveedores por providerId en una sola escritura bulk
+     * @param metrics Métricas por proveedor
+     * @return Cantidad de documentos insertados o modificados
+     */
+    Mono<Long> upsertAll(Flux<Metrics> metrics);
+
+    /**
+     * Página de métricas ordenada por providerId
+     * @param afterProviderId Cursor: providerId posterior al indicado; nulo desde el inicio
+     * @param limit Máximo de métricas a retornar
+     * @return Métricas de la página
+     */
+    Flux<Metrics> findPage(String afterProviderId, int limit);
 }
\ No newline at end of file
@@ -1,14 +1,20 @@
 package pe.farmaciasperuanas.digital.process.kpi.domain.port.repository;
 
 import pe.farmaciasperuanas.digital.process.kpi.domain.entity.SalesforceClicks;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.SalesforceEvent;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.SendIdCount;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 public interface SalesforceClicksRepository {
     Flux<SalesforceClicks> findByDateRange(LocalDateTime startDate, LocalDateTime endDate);
+    Flux<SalesforceEvent> findEventsByDateRange(LocalDateTime startDate, LocalDateTime endDate);
     Flux<SalesforceClicks> findBySendId(Integer sendId);
     Flux<SalesforceClicks> findByCorporacion(String corporacion);
     Flux<SalesforceClicks> findByFechaProceso(LocalDate fechaProceso);
+    Flux<SendIdCount> countBySendId(LocalDateTime startDate, LocalDateTime endDate);
+    Mono<LocalDateTime> findLatestEventDate();
 }
\ No newline at end of file
@@ -1,7 +1,9 @@
 package pe.farmaciasperuanas.digital.process.kpi.domain.port.repository;
 
 import pe.farmaciasperuanas.digital.process.kpi.domain.entity.SalesforceOpens;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.SendIdCount;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -11,4 +13,6 @@ public interface SalesforceOpensRepository {
     Flux<SalesforceOpens> findBySendId(Integer sendId);
     Flux<SalesforceOpens> findByCorporacion(String corporacion);
     Flux<SalesforceOpens> findByFechaProceso(LocalDate fechaProceso);
+    Flux<SendIdCount> countBySendId(LocalDateTime startDate, LocalDateTime endDate);
+    Mono<LocalDateTime> findLatestEventDate();
 }
\ No newline at end of file
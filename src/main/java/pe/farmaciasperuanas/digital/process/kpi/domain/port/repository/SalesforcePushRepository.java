@@ -0,0 +1,34 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.port.repository;
+
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.MessageCount;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+public interface SalesforcePushRepository {
+    String CHANNEL_APP = "app";
+    String CHANNEL_WEB = "web";
+    String CHANNEL_OTHER = "other";
+
+    Mono<String> findLatestFechaProceso();
+
+    /**
+     * Guarda el canal de los documentos del rango que aún no lo tienen: web si MessageName contiene "web",
+     * si no app si tiene AppName; el resto queda como other
+     * @return cantidad de documentos clasificados
+     */
+    Mono<Long> classifyChannels(LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Clasifica por lotes de _id todos los documentos de la colección que aún no tienen canal
+     * @return cantidad de documentos clasificados
+     */
+    Mono<Long> backfillChannels(int batchSize);
+
+    /**
+     * Envíos y aperturas por canal y MessageName del rango; solo cuenta documentos ya clasificados
+     */
+    Flux<MessageCount> countByMessageName(LocalDate startDate, LocalDate endDate, Collection<String> channels);
+}
@@ -0,0 +1,10 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.port.repository;
+
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.SendCampaign;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+
+public interface SendCampaignRepository {
+    Flux<SendCampaign> findBySendIds(Collection<Integer> sendIds);
+}
@@ -0,0 +1,9 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.port.repository;
+
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.StreamToken;
+import reactor.core.publisher.Mono;
+
+public interface StreamTokenRepository {
+    Mono<StreamToken> findBySource(String source);
+    Mono<StreamToken> save(StreamToken streamToken);
+}
@@ -0,0 +1,9 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.port.repository;
+
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Watermark;
+import reactor.core.publisher.Mono;
+
+public interface WatermarkRepository {
+    Mono<Watermark> findBySource(String source);
+    Mono<Watermark> save(Watermark watermark);
+}
@@ -0,0 +1,45 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.port.repository;
+
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.WorkUnit;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+public interface WorkUnitRepository {
+    /**
+     * Encola las unidades que faltan y reencola como PENDING las DONE y FAILED; no modifica las
+     * unidades CLAIMED
+     * @param workUnits Unidades (source, day)
+     * @return Cantidad de unidades insertadas o reencoladas
+     */
+    Mono<Long> enqueue(List<WorkUnit> workUnits);
+
+    /**
+     * Toma la siguiente unidad pendiente, o una reclamada cuyo lease venció
+     * @param owner Instancia que reclama la unidad
+     * @param lease Duración del lease
+     * @param maxAttempts Intentos máximos por unidad
+     * @return Unidad reclamada, o vacío si la cola está vacía
+     */
+    Mono<WorkUnit> claim(String owner, Duration lease, int maxAttempts);
+
+    /**
+     * Extiende el lease de una unidad mientras su dueño la sigue procesando
+     * @param workUnit Unidad reclamada
+     * @param lease Duración del lease desde ahora
+     * @return false si la unidad ya no está reclamada por el mismo dueño
+     */
+    Mono<Boolean> renew(WorkUnit workUnit, Duration lease);
+
+    /**
+     * Marca como FAILED las unidades CLAIMED con el lease vencido que ya agotaron sus intentos
+     * @param maxAttempts Intentos máximos por unidad
+     * @return Cantidad de unidades marcadas
+     */
+    Mono<Long> expire(int maxAttempts);
+
+    Mono<WorkUnit> complete(WorkUnit workUnit);
+
+    Mono<WorkUnit> fail(WorkUnit workUnit, String errorMessage, int maxAttempts);
+}
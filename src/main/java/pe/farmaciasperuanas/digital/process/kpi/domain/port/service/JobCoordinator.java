@@ -0,0 +1,16 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.port.service;
+
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.JobRun;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.KpiRunSummary;
+import reactor.core.publisher.Mono;
+
+public interface JobCoordinator {
+    /**
+     * Ejecuta un job solo si no hay otra ejecución en curso en esta ni en otra réplica,
+     * y registra la ejecución en kpi_job_runs
+     * @param jobName Nombre del job
+     * @param job Procesamiento a ejecutar
+     * @return Registro de la ejecución, o vacío si se omitió por estar en curso
+     */
+    Mono<JobRun> runExclusive(String jobName, Mono<KpiRunSummary> job);
+}
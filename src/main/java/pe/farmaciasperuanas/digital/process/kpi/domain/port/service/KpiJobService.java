@@ -0,0 +1,30 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.port.service;
+
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.JobProgress;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+public interface KpiJobService {
+    /**
+     * Encola el procesamiento de KPIs de un rango de fechas y retorna sin esperar a que termine
+     * @param startDate Fecha de inicio
+     * @param endDate Fecha de fin
+     * @return Job creado, en estado PENDING; error RejectedExecutionException si la cola está llena
+     */
+    Mono<JobProgress> submit(LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Obtiene el avance de un job de esta réplica
+     * @param jobId ID del job
+     * @return Avance del job, o vacío si no existe o ya expiró
+     */
+    Mono<JobProgress> findJob(String jobId);
+
+    /**
+     * Cancela un job pendiente o en curso; los días ya escritos se conservan
+     * @param jobId ID del job
+     * @return Avance del job al cancelarse, o vacío si no existe
+     */
+    Mono<JobProgress> cancel(String jobId);
+}
@@ -0,0 +1,23 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.port.service;
+
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Kpi;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Metrics;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.KpiQuery;
+import reactor.core.publisher.Flux;
+
+public interface KpiQueryService {
+    /**
+     * Obtiene una página de KPIs según los filtros de la consulta
+     * @param query Filtros, cursor y campos a retornar; el límite se ajusta al máximo permitido
+     * @return Flux con los KPIs de la página, ordenados por id
+     */
+    Flux<Kpi> findKpis(KpiQuery query);
+
+    /**
+     * Obtiene una página de métricas ordenada por proveedor
+     * @param afterProviderId Último providerId de la página anterior; nulo para la primera página
+     * @param limit Máximo de métricas; se ajusta al máximo permitido
+     * @return Flux con las métricas de la página
+     */
+    Flux<Metrics> findMetrics(String afterProviderId, Integer limit);
+}
@@ -1,5 +1,6 @@
 package pe.farmaciasperuanas.digital.process.kpi.domain.port.service;
 
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.KpiRunSummary;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDate;
@@ -33,7 +34,7 @@ public interface KpiService {
 
     /**
      * Procesa todos los KPIs pendientes (ejecución programada)
-     * @return Mono que completa cuando el proceso termina
+     * @return Resumen del periodo y lotes procesados
      */
-    Mono<Void> processAllPendingKpis();
+    Mono<KpiRunSummary> processAllPendingKpis();
 }
\ No newline at end of file
@@ -13,6 +13,14 @@ public interface MediosMailingService {
      */
     Mono<Void> processMailingPadreKpis(LocalDate startDate, LocalDate endDate);
 
+    /**
+     * Procesa en una sola lectura de clics los KPIs de todos los formatos de mailing (MC, MF, MB)
+     * @param startDate Fecha de inicio
+     * @param endDate Fecha de fin
+     * @return Mono que completa cuando el proceso termina
+     */
+    Mono<Void> processMailingFormatKpis(LocalDate startDate, LocalDate endDate);
+
     /**
      * Procesa los KPIs para mailing cabecera
      * @param startDate Fecha de inicio
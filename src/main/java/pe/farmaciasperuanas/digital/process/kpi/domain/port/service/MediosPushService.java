@@ -20,4 +20,24 @@ public interface MediosPushService {
      * @return Mono que completa cuando el proceso termina
      */
     Mono<Void> processPushWebKpis(LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Procesa los KPIs de push app y push web con una sola consulta agrupada por canal
+     * @param startDate Fecha de inicio
+     * @param endDate Fecha de fin
+     * @return Mono que completa cuando el proceso termina
+     */
+    Mono<Void> processPushKpis(LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Guarda el canal de los documentos de push recientes que llegaron sin él
+     * @return Mono con la cantidad de documentos clasificados
+     */
+    Mono<Long> classifyRecentPushChannels();
+
+    /**
+     * Clasifica por lotes todos los documentos de push históricos que aún no tienen canal
+     * @return Mono con la cantidad de documentos clasificados
+     */
+    Mono<Long> backfillPushChannels();
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 public interface MetricsService {
     /**
@@ -13,6 +14,14 @@ public interface MetricsService {
      */
     Mono<Void> calculateGeneralMetrics();
 
+    /**
+     * Calcula y actualiza las métricas generales solo de los proveedores con KPIs modificados
+     * desde la fecha indicada
+     * @param since Inicio del lote cuyos cambios se deben reflejar
+     * @return Mono que completa cuando el proceso termina
+     */
+    Mono<Void> calculateGeneralMetrics(LocalDateTime since);
+
     /**
      * Calcula y actualiza las métricas para un proveedor específico
      * @param providerId ID del proveedor
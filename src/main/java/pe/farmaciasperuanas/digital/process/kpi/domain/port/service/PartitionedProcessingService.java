@@ -0,0 +1,21 @@
+package pe.farmaciasperuanas.digital.process.kpi.domain.port.service;
+
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+public interface PartitionedProcessingService {
+    /**
+     * Divide un rango en unidades de trabajo (día x fuente) y las encola en kpi_work_units
+     * @param startDate Fecha de inicio
+     * @param endDate Fecha de fin
+     * @return Cantidad de unidades encoladas
+     */
+    Mono<Long> enqueue(LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Reclama y procesa unidades de la cola hasta vaciarla; cualquier réplica puede ejecutarlo
+     * @return Cantidad de unidades procesadas por esta instancia
+     */
+    Mono<Long> drain();
+}
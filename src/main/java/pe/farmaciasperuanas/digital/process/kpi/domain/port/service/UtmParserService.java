@@ -1,8 +1,12 @@
 package pe.farmaciasperuanas.digital.process.kpi.domain.port.service;
 
 import pe.farmaciasperuanas.digital.process.kpi.domain.entity.CampaignMetadata;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.SendCampaign;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+import java.util.Map;
+
 public interface UtmParserService {
     /**
      * Extrae metadatos de la campaña a partir de una URL con parámetros UTM
@@ -18,10 +22,31 @@ public interface UtmParserService {
      */
     Mono<CampaignMetadata> extractMetadataFromUtmCampaign(String utmCampaign);
 
+    /**
+     * Versión síncrona de {@link #extractMetadataFromUrl(String)} para recorridos de alto volumen
+     * @param url URL completa con parámetros UTM
+     * @return Metadatos extraídos de la campaña, o null si la URL no tiene un utm_campaign válido
+     */
+    CampaignMetadata parseUrl(String url);
+
+    /**
+     * Versión síncrona de {@link #extractMetadataFromUtmCampaign(String)}
+     * @param utmCampaign Valor del parámetro utm_campaign
+     * @return Metadatos extraídos de la campaña, o null si el formato no es válido
+     */
+    CampaignMetadata parseUtmCampaign(String utmCampaign);
+
     /**
      * Extrae el ID de la campaña de un sendID de Salesforce
      * @param sendId SendID de Salesforce
      * @return ID de la campaña asociada
      */
     Mono<String> extractCampaignIdFromSendId(Integer sendId);
+
+    /**
+     * Resuelve en una sola consulta la campaña y el proveedor de varios sendID de Salesforce
+     * @param sendIds SendIDs de Salesforce
+     * @return Campaña por sendID; los sendID sin campaña registrada usan el propio sendID como campaignId
+     */
+    Mono<Map<Integer, SendCampaign>> resolveSendIds(Collection<Integer> sendIds);
 }
\ No newline at end of file
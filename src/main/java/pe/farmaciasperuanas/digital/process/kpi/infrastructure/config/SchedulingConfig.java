@@ -2,31 +2,96 @@ package pe.farmaciasperuanas.digital.process.kpi.infrastructure.config;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
+import pe.farmaciasperuanas.digital.process.kpi.application.service.KpiPipelineMetrics;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.JobCoordinator;
 import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.KpiService;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.MediosPushService;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.PartitionedProcessingService;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
 
 @Configuration
 @EnableScheduling
+@ConditionalOnProperty(name = "kpi.scheduling.enabled", havingValue = "true", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
 public class SchedulingConfig {
 
+    private static final String KPI_PROCESSING_JOB = "kpi-processing";
+    private static final long KPI_PROCESSING_RATE = 900000; // 15 minutos en milisegundos
+
     private final KpiService kpiService;
+    private final JobCoordinator jobCoordinator;
+    private final PartitionedProcessingService partitionedProcessingService;
+    private final MediosPushService mediosPushService;
+    private final KpiPipelineMetrics pipelineMetrics;
+
+    private volatile long nextKpiProcessingFireTime; // Hora programada del siguiente disparo (ms)
+
+    @Value("${kpi.partitions.enabled:true}")
+    private boolean partitionsEnabled;
 
     /**
-     * Ejecuta el procesamiento de KPIs cada 15 minutos
+     * Ejecuta el procesamiento de KPIs cada 15 minutos. El coordinador omite la ejecución
+     * si la anterior sigue en curso en esta u otra réplica.
      */
-    @Scheduled(fixedRate = 900000) // 15 minutos en milisegundos
+    @Scheduled(fixedRate = KPI_PROCESSING_RATE)
     public void scheduleKpiProcessing() {
         log.info("Iniciando procesamiento programado de KPIs");
 
-        kpiService.processAllPendingKpis()
+        // Atraso desde la hora programada hasta el inicio real. Con fixedRate cada disparo está programado
+        // una frecuencia después del disparo programado anterior (no del inicio real), así que el atraso se
+        // acumula mientras el pool del scheduler siga ocupado. El primer disparo fija la referencia
+        long now = System.currentTimeMillis();
+        if (nextKpiProcessingFireTime > 0) {
+            long lag = now - nextKpiProcessingFireTime;
+            pipelineMetrics.recordSchedulerLag(KPI_PROCESSING_JOB, Duration.ofMillis(Math.max(lag, 0)));
+            nextKpiProcessingFireTime += KPI_PROCESSING_RATE;
+        } else {
+            nextKpiProcessingFireTime = now + KPI_PROCESSING_RATE;
+        }
+
+        jobCoordinator.runExclusive(KPI_PROCESSING_JOB, Mono.defer(kpiService::processAllPendingKpis))
                 .subscribe(
-                        null,
+                        run -> log.info("Ejecución {} del job {} finalizada con estado {}",
+                                run.getId(), run.getJobName(), run.getStatus()),
                         error -> log.error("Error en procesamiento programado de KPIs", error),
                         () -> log.info("Procesamiento programado de KPIs completado")
                 );
     }
-}
\ No newline at end of file
+
+    /**
+     * Reclama y procesa unidades de trabajo encoladas por cualquier réplica
+     */
+    @Scheduled(fixedDelayString = "${kpi.partitions.poll-interval:10000}")
+    public void scheduleWorkUnitProcessing() {
+        if (!partitionsEnabled) {
+            return;
+        }
+
+        partitionedProcessingService.drain()
+                .subscribe(
+                        null,
+                        error -> log.error("Error procesando unidades de trabajo", error)
+                );
+    }
+
+    /**
+     * Guarda el canal de los documentos de push que llegaron desde la última revisión, para que las
+     * lecturas filtren por el canal guardado
+     */
+    @Scheduled(fixedDelayString = "${kpi.push-channels.classify-interval:60000}")
+    public void schedulePushChannelClassification() {
+        mediosPushService.classifyRecentPushChannels()
+                .subscribe(
+                        null,
+                        error -> log.error("Error clasificando el canal de documentos de push", error)
+                );
+    }
+}
@@ -1,16 +1,92 @@
 package pe.farmaciasperuanas.digital.process.kpi.infrastructure.config.database;
 
-import org.springframework.context.annotation.Bean;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoException;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandSucceededEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.data.mongodb.repository.config.EnableReactiveMongoRepositories;
+import pe.farmaciasperuanas.digital.process.kpi.application.service.AdaptiveConcurrencyLimiter;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Slf4j
 @Configuration
 @EnableReactiveMongoRepositories(basePackages = "pe.farmaciasperuanas.digital.process.kpi")
 public class MongoConfig {
+
+    // Comandos de las escrituras bulk de KPIs y métricas
+    private static final Set<String> BULK_WRITE_COMMANDS = Set.of("insert", "update", "delete");
+
     @Bean
     public ReactiveMongoTemplate reactiveMongoTemplate(ReactiveMongoDatabaseFactory factory) {
         return new ReactiveMongoTemplate(factory);
     }
-}
+
+    /**
+     * Alimenta al limitador de lotes con la latencia y los errores de las escrituras bulk a MongoDB.
+     * Las agregaciones largas, los getMore de change streams y los findAndModify de los leases no
+     * representan carga de escritura; un DuplicateKey es contención, no sobrecarga.
+     */
+    @Bean
+    public MongoClientSettingsBuilderCustomizer commandLatencyCustomizer(AdaptiveConcurrencyLimiter limiter) {
+        return builder -> builder.addCommandListener(new CommandListener() {
+            @Override
+            public void commandSucceeded(CommandSucceededEvent event) {
+                if (BULK_WRITE_COMMANDS.contains(event.getCommandName())) {
+                    limiter.recordLatency(event.getElapsedTime(TimeUnit.MILLISECONDS));
+                }
+            }
+
+            @Override
+            public void commandFailed(CommandFailedEvent event) {
+                if (BULK_WRITE_COMMANDS.contains(event.getCommandName())
+                        && ErrorCategory.fromErrorCode(errorCode(event.getThrowable())) != ErrorCategory.DUPLICATE_KEY) {
+                    limiter.recordError();
+                }
+            }
+        });
+    }
+
+    private static int errorCode(Throwable throwable) {
+        return throwable instanceof MongoException ? ((MongoException) throwable).getCode() : -1;
+    }
+
+    @Bean
+    public MongoIndexBootstrapper mongoIndexBootstrapper(
+            ReactiveMongoTemplate reactiveMongoTemplate,
+            @Value("${kpi.indexes.create-missing:true}") boolean createMissing,
+            @Value("${kpi.indexes.fail-on-collscan:false}") boolean failOnCollscan) {
+        return new MongoIndexBootstrapper(reactiveMongoTemplate, createMissing, failOnCollscan);
+    }
+
+    /**
+     * Verifica los índices al iniciar sin esperar más que el tiempo indicado; vencido, el arranque
+     * continúa y MongoDB termina de crear los índices en segundo plano. Solo falla si una consulta
+     * crítica hace COLLSCAN y kpi.indexes.fail-on-collscan está habilitado.
+     */
+    @Bean
+    public ApplicationRunner mongoIndexBootstrapRunner(
+            MongoIndexBootstrapper mongoIndexBootstrapper,
+            @Value("${kpi.indexes.timeout:60}") long timeoutSeconds) {
+        return args -> mongoIndexBootstrapper.bootstrap()
+                .timeout(Duration.ofSeconds(timeoutSeconds))
+                .onErrorResume(TimeoutException.class, e -> {
+                    log.warn("Verificación de índices sin terminar tras {} s; se continúa el arranque", timeoutSeconds);
+                    return Mono.empty();
+                })
+                .block();
+    }
+}
\ No newline at end of file
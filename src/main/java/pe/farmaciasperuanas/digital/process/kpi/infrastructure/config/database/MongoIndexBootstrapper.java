@@ -0,0 +1,256 @@
+package pe.farmaciasperuanas.digital.process.kpi.infrastructure.config.database;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Declara los índices que necesitan las consultas de los adaptadores, reporta los que faltan,
+ * los crea si está habilitado y verifica con explain() que las consultas críticas no hagan COLLSCAN.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class MongoIndexBootstrapper {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final boolean createMissing;
+    private final boolean failOnCollscan;
+
+    private static final List<IndexDefinition> INDEXES = List.of(
+            // findByDateRange / countBySendId / findLatestEventDate
+            eventIndex("salesforce_opens"),
+            eventIndex("salesforce_clicks"),
+            eventIndex("salesforce_sents"),
+            // findBySendId
+            sendIdIndex("salesforce_opens"),
+            sendIdIndex("salesforce_clicks"),
+            sendIdIndex("salesforce_sents"),
+            // countByMessageName / classifyChannels; MessageName y MessageOpened cubren el $group
+            new IndexDefinition("salesforce_push", new Index()
+                    .on("FechaProceso", Sort.Direction.ASC)
+                    .on("channel", Sort.Direction.ASC)
+                    .on("MessageName", Sort.Direction.ASC)
+                    .on("MessageOpened", Sort.Direction.ASC)
+                    .named("FechaProceso_channel")),
+            // resolveSendIds
+            new IndexDefinition("salesforce_send_campaigns", new Index()
+                    .on("sendID", Sort.Direction.ASC)
+                    .unique()
+                    .named("sendID_unique")),
+            // Llave natural de upsertAll / incrementAll; los KPIs anteriores a period quedan fuera
+            new IndexDefinition("kpi", new Index()
+                    .on("campaignId", Sort.Direction.ASC)
+                    .on("campaignSubId", Sort.Direction.ASC)
+                    .on("kpiId", Sort.Direction.ASC)
+                    .on("period", Sort.Direction.ASC)
+                    .unique()
+                    .partial(PartialIndexFilter.of(Criteria.where("period").exists(true)))
+                    .named("natural_key_unique")),
+            // findByProviderId
+            new IndexDefinition("kpi", new Index()
+                    .on("providerId", Sort.Direction.ASC)
+                    .on("createdDate", Sort.Direction.ASC)
+                    .named("providerId_createdDate")),
+            // findProviderIdsUpdatedSince / findCampaignIdsUpdatedSince
+            new IndexDefinition("kpi", new Index()
+                    .on("updatedDate", Sort.Direction.ASC)
+                    .on("providerId", Sort.Direction.ASC)
+                    .named("updatedDate_providerId")),
+            // findByPeriodRange, lectura de buckets diarios al recalcular rollups y search, que filtra por
+            // granularity y periodo y pagina en orden (period, _id)
+            new IndexDefinition("kpi", new Index()
+                    .on("granularity", Sort.Direction.ASC)
+                    .on("period", Sort.Direction.ASC)
+                    .on("_id", Sort.Direction.ASC)
+                    .named("granularity_period_id")),
+            new IndexDefinition("kpi_rollups", new Index()
+                    .on("granularity", Sort.Direction.ASC)
+                    .on("period", Sort.Direction.ASC)
+                    .on("_id", Sort.Direction.ASC)
+                    .named("granularity_period_id")),
+            new IndexDefinition("kpi_rollups", new Index()
+                    .on("granularity", Sort.Direction.ASC)
+                    .on("period", Sort.Direction.ASC)
+                    .on("campaignId", Sort.Direction.ASC)
+                    .named("granularity_period_campaignId")),
+            // findByDateRange
+            new IndexDefinition("kpi", new Index()
+                    .on("createdDate", Sort.Direction.ASC)
+                    .named("createdDate")),
+            // refreshCampaignTotals / aggregateMetricsFromCampaignTotals
+            new IndexDefinition("kpi_campaign_totals", new Index()
+                    .on("campaignId", Sort.Direction.ASC)
+                    .on("updatedDate", Sort.Direction.ASC)
+                    .named("campaignId_updatedDate")),
+            new IndexDefinition("kpi_campaign_totals", new Index()
+                    .on("providerId", Sort.Direction.ASC)
+                    .named("providerId")),
+            // MetricsRepository.findByProviderId / updateMetrics / upsertAll; respalda el upsert atómico
+            new IndexDefinition("metrics", new Index()
+                    .on("providerId", Sort.Direction.ASC)
+                    .unique()
+                    .named("providerId_unique")),
+            // WorkUnitRepository.claim
+            new IndexDefinition("kpi_work_units", new Index()
+                    .on("status", Sort.Direction.ASC)
+                    .on("day", Sort.Direction.ASC)
+                    .named("status_day"))
+    );
+
+    public Mono<Void> bootstrap() {
+        return Flux.fromIterable(INDEXES)
+                .concatMap(this::ensureIndex)
+                .then(verifyHotQueries());
+    }
+
+    private Mono<Void> ensureIndex(IndexDefinition definition) {
+        Index index = definition.getIndex();
+        String signature = signature(index.getIndexKeys());
+
+        boolean unique = Boolean.TRUE.equals(index.getIndexOptions().get("unique"));
+
+        return reactiveMongoTemplate.indexOps(definition.getCollection()).getIndexInfo()
+                .filter(info -> signature.equals(signature(info)))
+                .next()
+                .map(info -> {
+                    // Un índice con las mismas llaves pero sin unique no se puede reemplazar sin borrarlo a mano
+                    if (unique && !info.isUnique()) {
+                        log.warn("El índice {} en {} debe ser único; elimínelo para que se recree",
+                                info.getName(), definition.getCollection());
+                    }
+                    return true;
+                })
+                .defaultIfEmpty(false)
+                .flatMap(exists -> {
+                    if (exists) {
+                        return Mono.empty();
+                    }
+                    if (!createMissing) {
+                        log.warn("Falta el índice {} {} en {}", indexName(index), signature, definition.getCollection());
+                        return Mono.empty();
+                    }
+
+                    log.info("Creando índice {} {} en {}", indexName(index), signature, definition.getCollection());
+                    return reactiveMongoTemplate.indexOps(definition.getCollection())
+                            .ensureIndex(index)
+                            .doOnError(e -> log.error("No se pudo crear el índice {} en {}: {}",
+                                    indexName(index), definition.getCollection(), e.getMessage()))
+                            .onErrorResume(e -> Mono.empty())
+                            .then();
+                });
+    }
+
+    private Mono<Void> verifyHotQueries() {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        LocalDate today = LocalDate.now();
+        Date from = Date.from(today.minusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        Date to = Date.from(today.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        Document eventRange = new Document("eventDate", new Document("$gte", from).append("$lte", to));
+
+        List<HotQuery> hotQueries = List.of(
+                new HotQuery("salesforce_opens", eventRange),
+                new HotQuery("salesforce_clicks", eventRange),
+                new HotQuery("salesforce_sents", eventRange),
+                new HotQuery("salesforce_push", new Document("FechaProceso",
+                        new Document("$gte", today.minusDays(1).format(formatter)).append("$lte", today.format(formatter)))
+                        .append("channel", new Document("$in", List.of("app", "web")))),
+                new HotQuery("salesforce_send_campaigns", new Document("sendID", new Document("$in", List.of(0)))),
+                new HotQuery("kpi", new Document("campaignId", "").append("campaignSubId", null)
+                        .append("kpiId", "").append("period", "")),
+                new HotQuery("metrics", new Document("providerId", "")));
+
+        return Flux.fromIterable(hotQueries)
+                .concatMap(hotQuery -> reactiveMongoTemplate.getCollection(hotQuery.getCollection())
+                        .flatMap(collection -> Mono.from(collection.find(hotQuery.getFilter()).explain()))
+                        .filter(explain -> usesCollectionScan(explain.get("queryPlanner", Document.class)
+                                .get("winningPlan", Document.class)))
+                        .map(explain -> hotQuery))
+                .collectList()
+                .flatMap(scans -> {
+                    if (scans.isEmpty()) {
+                        log.info("Consultas críticas verificadas: ninguna requiere COLLSCAN");
+                        return Mono.empty();
+                    }
+
+                    String detail = scans.stream()
+                            .map(scan -> scan.getCollection() + " " + scan.getFilter().keySet())
+                            .collect(Collectors.joining(", "));
+                    if (failOnCollscan) {
+                        return Mono.error(new IllegalStateException("Consultas críticas con COLLSCAN: " + detail));
+                    }
+                    log.warn("Consultas críticas con COLLSCAN: {}", detail);
+                    return Mono.empty();
+                });
+    }
+
+    private static boolean usesCollectionScan(Document stage) {
+        if (stage == null) {
+            return false;
+        }
+        if ("COLLSCAN".equals(stage.getString("stage"))) {
+            return true;
+        }
+        if (usesCollectionScan(stage.get("inputStage", Document.class))) {
+            return true;
+        }
+        List<Document> inputStages = stage.getList("inputStages", Document.class);
+        return inputStages != null && inputStages.stream().anyMatch(MongoIndexBootstrapper::usesCollectionScan);
+    }
+
+    private static String signature(Document keys) {
+        return keys.entrySet().stream()
+                .map(key -> key.getKey() + ":" + ((Number) key.getValue()).intValue())
+                .collect(Collectors.joining(","));
+    }
+
+    private static String signature(IndexInfo info) {
+        return info.getIndexFields().stream()
+                .map(field -> field.getKey() + ":" + (field.getDirection() == Sort.Direction.DESC ? -1 : 1))
+                .collect(Collectors.joining(","));
+    }
+
+    private static String indexName(Index index) {
+        Object name = index.getIndexOptions().get("name");
+        return name != null ? name.toString() : "";
+    }
+
+    private static IndexDefinition eventIndex(String collection) {
+        return new IndexDefinition(collection, new Index()
+                .on("eventDate", Sort.Direction.ASC)
+                .on("sendID", Sort.Direction.ASC)
+                .named("eventDate_sendID"));
+    }
+
+    private static IndexDefinition sendIdIndex(String collection) {
+        return new IndexDefinition(collection, new Index()
+                .on("sendID", Sort.Direction.ASC)
+                .named("sendID"));
+    }
+
+    @lombok.Value
+    private static class IndexDefinition {
+        String collection;
+        Index index;
+    }
+
+    @lombok.Value
+    private static class HotQuery {
+        String collection;
+        Document filter;
+    }
+}
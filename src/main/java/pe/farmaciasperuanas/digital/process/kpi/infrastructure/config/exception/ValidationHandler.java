@@ -8,6 +8,8 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * Implement class for running Spring Boot framework.<br/>
  * <b>Copyright</b>: &copy; 2025 Digital.<br/>
@@ -29,6 +31,28 @@ import reactor.core.publisher.Mono;
 @ControllerAdvice
 public class ValidationHandler {
 
+    @ExceptionHandler(IllegalArgumentException.class)
+    public Mono<ResponseEntity<ErrorCustomResponse>> handleBadRequest(IllegalArgumentException e, ServerWebExchange exchange) {
+
+        ErrorCustomResponse serverResponseError = new ErrorCustomResponse();
+        serverResponseError.setCode(HttpStatus.BAD_REQUEST.value() + "");
+        serverResponseError.setMessage(HttpStatus.BAD_REQUEST.getReasonPhrase());
+        serverResponseError.setDetail(e.getMessage());
+
+        return Mono.just(ResponseEntity.badRequest().body(serverResponseError));
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    public Mono<ResponseEntity<ErrorCustomResponse>> handleRejected(RejectedExecutionException e, ServerWebExchange exchange) {
+
+        ErrorCustomResponse serverResponseError = new ErrorCustomResponse();
+        serverResponseError.setCode(HttpStatus.TOO_MANY_REQUESTS.value() + "");
+        serverResponseError.setMessage(HttpStatus.TOO_MANY_REQUESTS.getReasonPhrase());
+        serverResponseError.setDetail(e.getMessage());
+
+        return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(serverResponseError));
+    }
+
     @ExceptionHandler(Exception.class)
     public Mono<ResponseEntity<ErrorCustomResponse>> handleException(Exception e, ServerWebExchange exchange) {
 
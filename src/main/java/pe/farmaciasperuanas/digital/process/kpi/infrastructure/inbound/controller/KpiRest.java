@@ -2,15 +2,28 @@ package pe.farmaciasperuanas.digital.process.kpi.infrastructure.inbound.controll
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Kpi;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Metrics;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.JobProgress;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.KpiQuery;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.KpiJobService;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.KpiQueryService;
 import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.KpiService;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.MediosPushService;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.MetricsService;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.PartitionedProcessingService;
 import reactor.core.publisher.Flux;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.data.mongodb.core.query.Query;
 import reactor.core.publisher.Mono;
 
+import java.net.URI;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Map;
 /**
  * Controlador principal que expone el servicio a trav&eacute;s de HTTP/Rest para
@@ -36,17 +49,42 @@ import java.util.Map;
 public class KpiRest {
   private final ReactiveMongoTemplate reactiveMongoTemplate;
   private final KpiService kpiService;
+  private final KpiJobService kpiJobService;
+  private final PartitionedProcessingService partitionedProcessingService;
+  private final KpiQueryService kpiQueryService;
+  private final MetricsService metricsService;
+  private final MediosPushService mediosPushService;
 
   @GetMapping(value = {"/health"})
   public String health() {
     return "It's running";
   }
 
+  /**
+   * Encola el procesamiento y responde 202 con el job; el avance se consulta en /jobs/{jobId}.
+   */
   @PostMapping("/process")
-  public Mono<Void> processKpis(
+  public Mono<ResponseEntity<JobProgress>> processKpis(
           @RequestParam("startDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
           @RequestParam("endDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
-    return kpiService.processKpis(startDate, endDate);
+    return kpiJobService.submit(startDate, endDate)
+            .map(job -> ResponseEntity.accepted()
+                    .location(URI.create("/kpi/jobs/" + job.getId()))
+                    .body(job));
+  }
+
+  @GetMapping("/jobs/{jobId}")
+  public Mono<ResponseEntity<JobProgress>> getJob(@PathVariable("jobId") String jobId) {
+    return kpiJobService.findJob(jobId)
+            .map(ResponseEntity::ok)
+            .defaultIfEmpty(ResponseEntity.notFound().build());
+  }
+
+  @DeleteMapping("/jobs/{jobId}")
+  public Mono<ResponseEntity<JobProgress>> cancelJob(@PathVariable("jobId") String jobId) {
+    return kpiJobService.cancel(jobId)
+            .map(ResponseEntity::ok)
+            .defaultIfEmpty(ResponseEntity.notFound().build());
   }
 
   @PostMapping("/process/provider/{providerId}")
@@ -56,4 +94,61 @@ public class KpiRest {
           @RequestParam("endDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
     return kpiService.processKpisByProvider(providerId, startDate, endDate);
   }
-}
\ No newline at end of file
+
+  @PostMapping("/process/partitioned")
+  public Mono<Long> enqueuePartitionedProcessing(
+          @RequestParam("startDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+          @RequestParam("endDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+    return partitionedProcessingService.enqueue(startDate, endDate);
+  }
+
+  /**
+   * Backfill único del canal de los documentos de push históricos; devuelve la cantidad clasificada.
+   */
+  @PostMapping("/push/channels/backfill")
+  public Mono<Long> backfillPushChannels() {
+    return mediosPushService.backfillPushChannels();
+  }
+
+  /**
+   * KPIs en NDJSON (un documento por línea) para no armar la respuesta completa en memoria.
+   * Para la siguiente página se envía en after el id del último KPI recibido.
+   */
+  @GetMapping(value = "/kpis", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public Flux<Kpi> findKpis(
+          @RequestParam(value = "campaignId", required = false) String campaignId,
+          @RequestParam(value = "campaignSubId", required = false) String campaignSubId,
+          @RequestParam(value = "providerId", required = false) String providerId,
+          @RequestParam(value = "kpiId", required = false) String kpiId,
+          @RequestParam(value = "granularity", required = false) String granularity,
+          @RequestParam(value = "startDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+          @RequestParam(value = "endDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+          @RequestParam(value = "after", required = false) String after,
+          @RequestParam(value = "limit", defaultValue = "0") int limit,
+          @RequestParam(value = "fields", required = false) List<String> fields) {
+    return kpiQueryService.findKpis(KpiQuery.builder()
+            .campaignId(campaignId)
+            .campaignSubId(campaignSubId)
+            .providerId(providerId)
+            .kpiId(kpiId)
+            .granularity(granularity)
+            .startDate(startDate)
+            .endDate(endDate)
+            .after(after)
+            .limit(limit)
+            .fields(fields)
+            .build());
+  }
+
+  @GetMapping(value = "/metrics", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public Flux<Metrics> findMetrics(
+          @RequestParam(value = "after", required = false) String after,
+          @RequestParam(value = "limit", required = false) Integer limit) {
+    return kpiQueryService.findMetrics(after, limit);
+  }
+
+  @GetMapping("/metrics/{providerId}")
+  public Mono<Metrics> getProviderMetrics(@PathVariable("providerId") String providerId) {
+    return metricsService.getProviderMetrics(providerId);
+  }
+}
@@ -0,0 +1,327 @@
+package pe.farmaciasperuanas.digital.process.kpi.infrastructure.inbound.stream;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import pe.farmaciasperuanas.digital.process.kpi.application.service.KpiReadCache;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.CampaignMetadata;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Kpi;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.SendCampaign;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.StreamToken;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.KpiPeriod;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.MailingFormats;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.JobLockRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.KpiRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.StreamTokenRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.UtmParserService;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Modo streaming opcional (kpi.streaming.enabled): escucha los inserts de las colecciones de
+ * Salesforce por change streams, acumula contadores en memoria por micro-lote y los aplica
+ * como $inc sobre la colección kpi. El resume token de cada colección se guarda después de
+ * cada flush para continuar desde ahí tras un reinicio.
+ * <p>
+ * Solo escucha la réplica que tiene el lease kpi-streaming; las demás reintentan tomarlo y la que
+ * lo toma continúa desde los tokens guardados, así cada evento se cuenta una sola vez.
+ * <p>
+ * Solo se mantienen KPIs de cantidad; las tasas (OR, CTR) las recalcula el proceso programado,
+ * que además reconcilia los contadores del día.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "kpi.streaming.enabled", havingValue = "true")
+public class KpiChangeStreamListener {
+
+    private static final String SOURCE_OPENS = "salesforce_opens";
+    private static final String SOURCE_CLICKS = "salesforce_clicks";
+    private static final String SOURCE_SENTS = "salesforce_sents";
+    private static final String SOURCE_PUSH = "salesforce_push";
+
+    private static final String STREAMING_JOB = "kpi-streaming";
+
+    private static final Map<String, List<String>> FIELDS_BY_SOURCE = Map.of(
+            SOURCE_OPENS, List.of("sendID", "eventDate"),
+            SOURCE_CLICKS, List.of("sendID", "url", "eventDate"),
+            SOURCE_SENTS, List.of("sendID", "eventDate"),
+            SOURCE_PUSH, List.of("MessageName", "FechaProceso", "MessageOpened", "AppName"));
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final KpiRepository kpiRepository;
+    private final StreamTokenRepository streamTokenRepository;
+    private final UtmParserService utmParserService;
+    private final KpiReadCache kpiReadCache;
+    private final JobLockRepository jobLockRepository;
+
+    private final String instanceId = System.getenv().getOrDefault("HOSTNAME", "kpi")
+            + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+    private final Disposable.Swap leadership = Disposables.swap();
+
+    // Change streams abiertos mientras esta réplica tiene el lease; nulo mientras no lo tiene
+    private volatile Disposable.Composite subscriptions;
+
+    @Value("${kpi.streaming.flush-interval:1000}")
+    private long flushIntervalMillis; // Cada cuánto se aplican los contadores acumulados
+
+    @Value("${kpi.streaming.max-batch:1000}")
+    private int maxBatch; // Máximo de eventos por micro-lote
+
+    @Value("${kpi.streaming.lease:30000}")
+    private long leaseMillis; // Lease de la réplica que escucha; se renueva cada tercio
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        leadership.update(lead().subscribe(
+                null,
+                error -> log.error("Lease del modo streaming detenido", error)));
+    }
+
+    @PreDestroy
+    public void stop() {
+        leadership.dispose();
+        if (subscriptions != null) {
+            stopStreams();
+            jobLockRepository.release(STREAMING_JOB, instanceId)
+                    .onErrorResume(e -> {
+                        log.warn("No se pudo liberar el lease del modo streaming: {}", e.getMessage());
+                        return Mono.empty();
+                    })
+                    .block(Duration.ofSeconds(5));
+        }
+    }
+
+    private Flux<Boolean> lead() {
+        Duration lease = Duration.ofMillis(leaseMillis);
+        Duration interval = lease.dividedBy(3);
+        AtomicLong renewedAt = new AtomicLong(System.nanoTime());
+        // Cada tick toma o renueva el lease. Ante un error de MongoDB se sigue escuchando solo hasta un tercio
+        // antes del vencimiento, para no coincidir con la réplica que lo tome después
+        return Flux.interval(Duration.ZERO, interval)
+                .concatMap(tick -> jobLockRepository.acquire(STREAMING_JOB, instanceId, lease)
+                        .doOnNext(lock -> renewedAt.set(System.nanoTime()))
+                        .map(lock -> true)
+                        .defaultIfEmpty(false)
+                        .onErrorResume(e -> {
+                            log.warn("No se pudo renovar el lease del modo streaming: {}", e.getMessage());
+                            return Mono.just(subscriptions != null
+                                    && System.nanoTime() - renewedAt.get() < lease.minus(interval).toNanos());
+                        }))
+                .doOnNext(leading -> {
+                    if (leading && subscriptions == null) {
+                        startStreams();
+                    } else if (!leading && subscriptions != null) {
+                        log.warn("Lease del modo streaming perdido; se detienen los change streams");
+                        stopStreams();
+                    }
+                });
+    }
+
+    private void startStreams() {
+        Disposable.Composite streams = Disposables.composite();
+        for (String source : List.of(SOURCE_OPENS, SOURCE_CLICKS, SOURCE_SENTS, SOURCE_PUSH)) {
+            streams.add(listen(source).subscribe(
+                    null,
+                    error -> log.error("Change stream de {} detenido", source, error)));
+        }
+        subscriptions = streams;
+        log.info("Modo streaming de KPIs iniciado en {} (flush cada {} ms)", instanceId, flushIntervalMillis);
+    }
+
+    private void stopStreams() {
+        Disposable.Composite streams = subscriptions;
+        subscriptions = null;
+        if (streams != null) {
+            streams.dispose();
+        }
+    }
+
+    private Flux<Void> listen(String source) {
+        // defer: cada reintento vuelve a leer el último token guardado
+        return Flux.defer(() -> streamTokenRepository.findBySource(source)
+                        .map(token -> options(source).resumeAfter(BsonDocument.parse(token.getResumeToken())).build())
+                        .defaultIfEmpty(options(source).build())
+                        .flatMapMany(options -> reactiveMongoTemplate.changeStream(source, options, Document.class)))
+                .bufferTimeout(maxBatch, Duration.ofMillis(flushIntervalMillis))
+                .concatMap(events -> flush(source, events))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofMinutes(1))
+                        .doBeforeRetry(signal -> log.warn("Reintentando change stream de {}: {}",
+                                source, signal.failure().getMessage())));
+    }
+
+    private ChangeStreamOptions.ChangeStreamOptionsBuilder options(String source) {
+        // Del documento insertado solo viajan los campos que usan los contadores
+        Document projection = new Document("operationType", 1).append("ns", 1).append("documentKey", 1);
+        for (String field : FIELDS_BY_SOURCE.get(source)) {
+            projection.append("fullDocument." + field, 1);
+        }
+
+        return ChangeStreamOptions.builder()
+                .filter(new Document("$match", new Document("operationType", "insert")),
+                        new Document("$project", projection));
+    }
+
+    private Mono<Void> flush(String source, List<ChangeStreamEvent<Document>> events) {
+        List<Document> documents = events.stream()
+                .map(ChangeStreamEvent::getBody)
+                .filter(document -> document != null)
+                .toList();
+
+        BsonValue resumeToken = events.get(events.size() - 1).getResumeToken();
+
+        LocalDateTime startedAt = LocalDateTime.now();
+        return kpiRepository.incrementAll(toDeltas(source, documents))
+                .doOnNext(written -> log.debug("Flush de {}: {} eventos, {} KPIs actualizados",
+                        source, events.size(), written))
+                .flatMap(written -> written > 0 ? kpiReadCache.evictTouchedSince(startedAt) : Mono.empty())
+                .then(streamTokenRepository.save(StreamToken.builder()
+                        .id(source)
+                        .resumeToken(resumeToken.asDocument().toJson())
+                        .build()))
+                .then();
+    }
+
+    private Flux<Kpi> toDeltas(String source, List<Document> documents) {
+        switch (source) {
+            case SOURCE_OPENS:
+                return sendIdDeltas(documents, "MP-I", "Impresiones (Aperturas)");
+            case SOURCE_SENTS:
+                return sendIdDeltas(documents, "MP-A", "Alcance (Envíos)");
+            case SOURCE_CLICKS:
+                return Flux.concat(sendIdDeltas(documents, "MP-C", "Clics"), formatDeltas(documents));
+            case SOURCE_PUSH:
+                return pushDeltas(documents);
+            default:
+                return Flux.empty();
+        }
+    }
+
+    // Contadores por (sendID, día); los sendID del micro-lote se resuelven juntos
+    private Flux<Kpi> sendIdDeltas(List<Document> documents, String kpiId, String kpiDescription) {
+        Map<Integer, Map<String, Long>> countsBySendId = new HashMap<>();
+        for (Document document : documents) {
+            Integer sendId = document.getInteger("sendID");
+            String period = period(document.getDate("eventDate"));
+            if (sendId != null && period != null) {
+                countsBySendId.computeIfAbsent(sendId, key -> new HashMap<>()).merge(period, 1L, Long::sum);
+            }
+        }
+
+        return utmParserService.resolveSendIds(countsBySendId.keySet())
+                .flatMapMany(campaigns -> Flux.fromIterable(countsBySendId.entrySet())
+                        .filter(entry -> campaigns.containsKey(entry.getKey()))
+                        .flatMapIterable(entry -> entry.getValue().entrySet().stream()
+                                .map(count -> {
+                                    SendCampaign campaign = campaigns.get(entry.getKey());
+                                    Kpi kpi = delta(campaign.getCampaignId(), null, kpiId, kpiDescription,
+                                            count.getKey(), count.getValue());
+                                    kpi.setProviderId(campaign.getProviderId());
+                                    return kpi;
+                                })
+                                .toList()));
+    }
+
+    // Contadores de clics por (formato, campaignSubId, día)
+    private Flux<Kpi> formatDeltas(List<Document> documents) {
+        return Flux.fromIterable(documents)
+                .filter(document -> document.getString("url") != null
+                        && document.getString("url").contains("utm_campaign"))
+                .mapNotNull(document -> {
+                    CampaignMetadata metadata = utmParserService.parseUrl(document.getString("url"));
+                    String period = period(document.getDate("eventDate"));
+                    if (metadata == null || period == null
+                            || !MailingFormats.CLICK_KPIS_BY_FORMAT.containsKey(metadata.getFormat())) {
+                        return null;
+                    }
+                    return Map.entry(MailingFormats.CLICK_KPIS_BY_FORMAT.get(metadata.getFormat()) + "|"
+                            + metadata.getCampaignSubId() + "|" + period, 1L);
+                })
+                .collect(HashMap<String, Long>::new, (counts, entry) -> counts.merge(entry.getKey(), 1L, Long::sum))
+                .flatMapMany(counts -> Flux.fromIterable(counts.entrySet()))
+                .map(entry -> {
+                    String[] key = entry.getKey().split("\\|", 3);
+                    return delta(null, key[1], key[0], "Clics", key[2], entry.getValue());
+                });
+    }
+
+    // Contadores de envíos y aperturas por (canal, messageName, FechaProceso)
+    private Flux<Kpi> pushDeltas(List<Document> documents) {
+        Map<String, Long> counts = new HashMap<>();
+        for (Document document : documents) {
+            String messageName = document.getString("MessageName");
+            String fechaProceso = document.getString("FechaProceso");
+            if (messageName == null || messageName.isEmpty() || fechaProceso == null) {
+                continue;
+            }
+
+            String prefix = messageName.toLowerCase().contains("web") ? "PW"
+                    : document.containsKey("AppName") ? "PA" : null;
+            if (prefix == null) {
+                continue;
+            }
+
+            String campaignId = messageName.split("_")[0];
+            counts.merge(prefix + "-A|" + campaignId + "|" + fechaProceso, 1L, Long::sum);
+            if (Boolean.TRUE.equals(document.getBoolean("MessageOpened"))) {
+                counts.merge(prefix + "-I|" + campaignId + "|" + fechaProceso, 1L, Long::sum);
+            }
+        }
+
+        return Flux.fromIterable(counts.entrySet())
+                .map(entry -> {
+                    String[] key = entry.getKey().split("\\|", 3);
+                    String description = key[0].endsWith("-A") ? "Alcance (Envíos)" : "Impresiones (Aperturas)";
+                    return delta(key[1], null, key[0], description, key[2], entry.getValue());
+                });
+    }
+
+    private Kpi delta(String campaignId, String campaignSubId, String kpiId, String kpiDescription,
+                      String period, long count) {
+        return Kpi.builder()
+                .campaignId(campaignId)
+                .campaignSubId(campaignSubId)
+                .kpiId(kpiId)
+                .kpiDescription(kpiDescription)
+                .type("Cantidad")
+                .value((double) count)
+                .status("A")
+                .period(period)
+                .build();
+    }
+
+    private String period(Date eventDate) {
+        if (eventDate == null) {
+            return null;
+        }
+        LocalDate day = eventDate.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+        return KpiPeriod.of(day, day);
+    }
+}
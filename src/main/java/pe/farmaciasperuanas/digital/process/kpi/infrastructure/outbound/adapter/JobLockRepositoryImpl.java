@@ -0,0 +1,48 @@
+package pe.farmaciasperuanas.digital.process.kpi.infrastructure.outbound.adapter;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.JobLock;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.JobLockRepository;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class JobLockRepositoryImpl implements JobLockRepository {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Override
+    public Mono<JobLock> acquire(String jobName, String owner, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        Query query = new Query(Criteria.where("id").is(jobName)
+                .orOperator(Criteria.where("lockedUntil").lt(now), Criteria.where("owner").is(owner)));
+        Update update = new Update()
+                .set("owner", owner)
+                .set("lockedAt", now)
+                .set("lockedUntil", now.plus(lease));
+
+        // Si otra instancia tiene el lease vigente, el upsert choca con el _id existente
+        return reactiveMongoTemplate.findAndModify(query, update,
+                        FindAndModifyOptions.options().upsert(true).returnNew(true), JobLock.class)
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.empty());
+    }
+
+    @Override
+    public Mono<Void> release(String jobName, String owner) {
+        Query query = new Query(Criteria.where("id").is(jobName).and("owner").is(owner));
+        Update update = new Update().set("lockedUntil", LocalDateTime.now());
+        return reactiveMongoTemplate.updateFirst(query, update, JobLock.class).then();
+    }
+}
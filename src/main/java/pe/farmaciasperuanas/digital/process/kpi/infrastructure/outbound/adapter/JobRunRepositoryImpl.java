@@ -0,0 +1,22 @@
+package pe.farmaciasperuanas.digital.process.kpi.infrastructure.outbound.adapter;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Repository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.JobRun;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.JobRunRepository;
+import reactor.core.publisher.Mono;
+
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class JobRunRepositoryImpl implements JobRunRepository {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Override
+    public Mono<JobRun> save(JobRun jobRun) {
+        return reactiveMongoTemplate.save(jobRun);
+    }
+}
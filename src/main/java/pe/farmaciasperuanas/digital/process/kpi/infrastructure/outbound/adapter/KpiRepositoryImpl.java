@@ -1,28 +1,55 @@
 package pe.farmaciasperuanas.digital.process.kpi.infrastructure.outbound.adapter;
 
+import com.mongodb.client.result.DeleteResult;
 import lombok.RequiredArgsConstructor;
+import org.bson.Document;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Repository;
 import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Kpi;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Metrics;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.KpiPeriod;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.KpiQuery;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.MetricKpis;
 import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.KpiRepository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 
 @Repository
 @RequiredArgsConstructor
 @Slf4j
 public class KpiRepositoryImpl implements KpiRepository {
 
+    private static final String CAMPAIGN_TOTALS_COLLECTION = "kpi_campaign_totals";
+
     private final ReactiveMongoTemplate reactiveMongoTemplate;
 
+    @Value("${kpi.bulk.size:500}")
+    private int bulkSize; // Máximo de KPIs por escritura bulk
+
+    @Value("${kpi.bulk.timeout:200}")
+    private long bulkTimeoutMillis; // Tiempo máximo de espera para completar un bulk
+
     @Override
     public Mono<Kpi> save(Kpi kpi) {
         if (kpi.getCreatedDate() == null) {
@@ -32,6 +59,79 @@ public class KpiRepositoryImpl implements KpiRepository {
         return reactiveMongoTemplate.save(kpi);
     }
 
+    @Override
+    public Mono<Long> upsertAll(Flux<Kpi> kpis) {
+        return kpis
+                .bufferTimeout(bulkSize, Duration.ofMillis(bulkTimeoutMillis))
+                .concatMap(this::bulkUpsert)
+                .reduce(0L, Long::sum);
+    }
+
+    @Override
+    public Mono<Long> incrementAll(Flux<Kpi> deltas) {
+        return deltas
+                .bufferTimeout(bulkSize, Duration.ofMillis(bulkTimeoutMillis))
+                .concatMap(this::bulkIncrement)
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<Long> bulkUpsert(List<Kpi> kpis) {
+        LocalDateTime now = LocalDateTime.now();
+        ReactiveBulkOperations bulkOps = reactiveMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Kpi.class);
+
+        for (Kpi kpi : kpis) {
+            Update update = new Update()
+                    .set("providerId", kpi.getProviderId())
+                    .set("kpiDescription", kpi.getKpiDescription())
+                    .set("type", kpi.getType())
+                    .set("value", kpi.getValue())
+                    .set("numerator", kpi.getNumerator())
+                    .set("denominator", kpi.getDenominator())
+                    .set("status", kpi.getStatus())
+                    .set("updatedDate", now)
+                    .set("granularity", KpiPeriod.granularityOf(kpi.getPeriod()))
+                    .setOnInsert("createdDate", now)
+                    .setOnInsert("createdUser", kpi.getCreatedUser());
+            bulkOps.upsert(naturalKey(kpi), update);
+        }
+
+        return execute(bulkOps);
+    }
+
+    private Mono<Long> bulkIncrement(List<Kpi> deltas) {
+        LocalDateTime now = LocalDateTime.now();
+        ReactiveBulkOperations bulkOps = reactiveMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Kpi.class);
+
+        for (Kpi delta : deltas) {
+            Update update = new Update()
+                    .inc("value", delta.getValue())
+                    .set("updatedDate", now)
+                    .setOnInsert("providerId", delta.getProviderId())
+                    .setOnInsert("kpiDescription", delta.getKpiDescription())
+                    .setOnInsert("type", delta.getType())
+                    .setOnInsert("status", delta.getStatus())
+                    .set("granularity", KpiPeriod.granularityOf(delta.getPeriod()))
+                    .setOnInsert("createdDate", now)
+                    .setOnInsert("createdUser", delta.getCreatedUser());
+            bulkOps.upsert(naturalKey(delta), update);
+        }
+
+        return execute(bulkOps);
+    }
+
+    // Llave natural del KPI: (campaignId, campaignSubId, kpiId, period)
+    private Query naturalKey(Kpi kpi) {
+        return new Query(Criteria.where("campaignId").is(kpi.getCampaignId())
+                .and("campaignSubId").is(kpi.getCampaignSubId())
+                .and("kpiId").is(kpi.getKpiId())
+                .and("period").is(kpi.getPeriod()));
+    }
+
+    private Mono<Long> execute(ReactiveBulkOperations bulkOps) {
+        return bulkOps.execute()
+                .map(result -> (long) result.getUpserts().size() + result.getModifiedCount());
+    }
+
     @Override
     public Mono<Kpi> findById(String id) {
         return reactiveMongoTemplate.findById(id, Kpi.class);
@@ -76,8 +176,209 @@ public class KpiRepositoryImpl implements KpiRepository {
 
         return reactiveMongoTemplate.find(query, Kpi.class);
     }
+    @Override
+    public Flux<Kpi> findByPeriodRange(LocalDate startDate, LocalDate endDate) {
+        Query query = new Query(Criteria.where("granularity").is(KpiPeriod.DAY)
+                .and("period").gte(startDate.toString()).lte(endDate.toString()))
+                .with(Sort.by(Sort.Direction.ASC, "period"));
+        return reactiveMongoTemplate.find(query, Kpi.class);
+    }
+
+    @Override
+    public Flux<Kpi> search(KpiQuery kpiQuery) {
+        String granularity = kpiQuery.getGranularity() != null ? kpiQuery.getGranularity() : KpiPeriod.DAY;
+        String collection = KpiPeriod.DAY.equals(granularity) ? "kpi" : "kpi_rollups";
+        if (kpiQuery.getAfter() == null) {
+            return search(kpiQuery, granularity, collection, null);
+        }
+
+        // El cursor sigue siendo el id del último KPI; su periodo se lee para continuar en el orden (period, _id)
+        Query cursorQuery = new Query(Criteria.where("_id").is(kpiQuery.getAfter()));
+        cursorQuery.fields().include("period");
+        return reactiveMongoTemplate.findOne(cursorQuery, Kpi.class, collection)
+                .switchIfEmpty(Mono.error(new IllegalArgumentException("Cursor no válido: " + kpiQuery.getAfter())))
+                .flatMapMany(cursor -> search(kpiQuery, granularity, collection, cursor));
+    }
+
+    // Paginación por cursor sobre (period, _id): sin skip, y el filtro por granularity y periodo con el orden
+    // usan el mismo índice {granularity, period, _id}, sin ordenar en memoria
+    private Flux<Kpi> search(KpiQuery kpiQuery, String granularity, String collection, Kpi cursor) {
+        Criteria criteria = Criteria.where("granularity").is(granularity);
+        if (kpiQuery.getCampaignId() != null) {
+            criteria = criteria.and("campaignId").is(kpiQuery.getCampaignId());
+        }
+        if (kpiQuery.getCampaignSubId() != null) {
+            criteria = criteria.and("campaignSubId").is(kpiQuery.getCampaignSubId());
+        }
+        if (kpiQuery.getProviderId() != null) {
+            criteria = criteria.and("providerId").is(kpiQuery.getProviderId());
+        }
+        if (kpiQuery.getKpiId() != null) {
+            criteria = criteria.and("kpiId").is(kpiQuery.getKpiId());
+        }
+
+        String fromPeriod = kpiQuery.getStartDate() != null ? kpiQuery.getStartDate().toString() : null;
+        if (cursor != null && (fromPeriod == null || cursor.getPeriod().compareTo(fromPeriod) > 0)) {
+            fromPeriod = cursor.getPeriod();
+        }
+        if (fromPeriod != null || kpiQuery.getEndDate() != null) {
+            Criteria period = criteria.and("period");
+            if (fromPeriod != null) {
+                period.gte(fromPeriod);
+            }
+            if (kpiQuery.getEndDate() != null) {
+                period.lte(kpiQuery.getEndDate().toString());
+            }
+        }
+        if (cursor != null) {
+            criteria = new Criteria().andOperator(criteria, new Criteria().orOperator(
+                    Criteria.where("period").gt(cursor.getPeriod()),
+                    Criteria.where("_id").gt(kpiQuery.getAfter())));
+        }
+
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "period", "_id"))
+                .limit(kpiQuery.getLimit());
+        if (kpiQuery.getFields() != null && !kpiQuery.getFields().isEmpty()) {
+            query.fields().include(kpiQuery.getFields().toArray(new String[0]));
+        }
+
+        return reactiveMongoTemplate.find(query, Kpi.class, collection);
+    }
+
     @Override
     public Flux<Kpi> findAll() {
         return reactiveMongoTemplate.findAll(Kpi.class);
     }
-}
\ No newline at end of file
+
+    @Override
+    public Flux<String> findProviderIdsUpdatedSince(LocalDateTime since) {
+        Query query = new Query(Criteria.where("updatedDate").gte(since));
+        return reactiveMongoTemplate.findDistinct(query, "providerId", Kpi.class, String.class)
+                .filter(providerId -> !providerId.isEmpty());
+    }
+
+    @Override
+    public Flux<String> findCampaignIdsUpdatedSince(LocalDateTime since) {
+        Query query = new Query(Criteria.where("updatedDate").gte(since));
+        return reactiveMongoTemplate.findDistinct(query, "campaignId", Kpi.class, String.class);
+    }
+
+    @Override
+    public Flux<Metrics> aggregateMetricsByProvider(Collection<String> providerIds) {
+        Criteria criteria = providerIds != null
+                ? Criteria.where("providerId").in(providerIds)
+                : Criteria.where("providerId").nin(null, "");
+        return aggregateMetrics(criteria);
+    }
+
+    @Override
+    public Flux<Metrics> aggregateMetricsByDateRange(LocalDate startDate, LocalDate endDate) {
+        // Rango por periodo de los eventos (buckets diarios), no por fecha de procesamiento
+        return aggregateMetrics(Criteria.where("providerId").nin(null, "")
+                .and("granularity").is(KpiPeriod.DAY)
+                .and("period").gte(startDate.toString()).lte(endDate.toString()));
+    }
+
+    // Primero agrupa por (proveedor, campaña) y luego por proveedor: las campañas distintas se cuentan
+    // sin acumular listas en memoria, ni en MongoDB ni en la aplicación
+    private Flux<Metrics> aggregateMetrics(Criteria criteria) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(criteria),
+                Aggregation.group("providerId", "campaignId")
+                        .sum(ConditionalOperators.when(ComparisonOperators.valueOf("kpiId")
+                                        .equalToValue(MetricKpis.INVESTMENT_KPI_ID))
+                                .thenValueOf("value")
+                                .otherwise(0.0)).as("investment")
+                        .sum(ConditionalOperators.when(ArrayOperators.arrayOf(MetricKpis.SALES_KPI_IDS)
+                                        .containsValue("$kpiId"))
+                                .thenValueOf("value")
+                                .otherwise(0.0)).as("sales"),
+                Aggregation.group("providerId")
+                        .sum(ConditionalOperators.when(ComparisonOperators.valueOf("campaignId").greaterThanValue(""))
+                                .then(1)
+                                .otherwise(0)).as("totalActiveCampaigns")
+                        .sum("investment").as("totalInvestmentPeriod")
+                        .sum("sales").as("ventaTotal"),
+                Aggregation.project("totalActiveCampaigns", "totalInvestmentPeriod", "ventaTotal")
+                        .and("providerId").previousOperation()
+        ).withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+        return reactiveMongoTemplate.aggregate(aggregation, "kpi", Metrics.class);
+    }
+
+    @Override
+    public Flux<String> refreshCampaignTotals(Collection<String> campaignIds) {
+        // Mientras la colección esté vacía se calcula completa; luego solo las campañas indicadas
+        return reactiveMongoTemplate.exists(new Query(), CAMPAIGN_TOTALS_COLLECTION)
+                .flatMapMany(seeded -> {
+                    Criteria scope = seeded && campaignIds != null
+                            ? Criteria.where("campaignId").in(campaignIds)
+                            : new Criteria();
+                    Object refreshedAt = reactiveMongoTemplate.getConverter().convertToMongoType(LocalDateTime.now());
+                    return findTotalsProviderIds(scope)
+                            .concatWith(mergeCampaignTotals(seeded ? campaignIds : null, refreshedAt)
+                                    .then(removeStaleCampaignTotals(scope, refreshedAt))
+                                    .thenMany(Flux.defer(() -> findTotalsProviderIds(scope))))
+                            .distinct();
+                });
+    }
+
+    @Override
+    public Flux<Metrics> aggregateMetricsFromCampaignTotals(Collection<String> providerIds) {
+        Criteria criteria = providerIds != null
+                ? Criteria.where("providerId").in(providerIds)
+                : new Criteria();
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(criteria),
+                Aggregation.group("providerId")
+                        .sum(ConditionalOperators.when(ComparisonOperators.valueOf("campaignId").greaterThanValue(""))
+                                .then(1)
+                                .otherwise(0)).as("totalActiveCampaigns")
+                        .sum("investment").as("totalInvestmentPeriod")
+                        .sum("sales").as("ventaTotal"),
+                Aggregation.project("totalActiveCampaigns", "totalInvestmentPeriod", "ventaTotal")
+                        .and("providerId").previousOperation());
+
+        return reactiveMongoTemplate.aggregate(aggregation, CAMPAIGN_TOTALS_COLLECTION, Metrics.class);
+    }
+
+    // Reemplaza con $merge los totales de cada (proveedor, campaña) a partir de todos sus KPIs; el costo
+    // depende de las campañas tocadas, no del histórico completo de los proveedores
+    private Mono<Void> mergeCampaignTotals(Collection<String> campaignIds, Object refreshedAt) {
+        Document match = new Document("providerId", new Document("$nin", Arrays.asList(null, "")));
+        if (campaignIds != null) {
+            match.append("campaignId", new Document("$in", campaignIds));
+        }
+        List<Document> pipeline = List.of(
+                new Document("$match", match),
+                new Document("$group", new Document("_id", new Document("providerId", "$providerId")
+                        .append("campaignId", "$campaignId"))
+                        .append("investment", new Document("$sum", new Document("$cond", List.of(
+                                new Document("$eq", List.of("$kpiId", MetricKpis.INVESTMENT_KPI_ID)), "$value", 0.0))))
+                        .append("sales", new Document("$sum", new Document("$cond", List.of(
+                                new Document("$in", List.of("$kpiId", MetricKpis.SALES_KPI_IDS)), "$value", 0.0))))),
+                new Document("$project", new Document("providerId", "$_id.providerId")
+                        .append("campaignId", "$_id.campaignId")
+                        .append("investment", 1)
+                        .append("sales", 1)
+                        .append("updatedDate", refreshedAt)),
+                new Document("$merge", new Document("into", CAMPAIGN_TOTALS_COLLECTION)
+                        .append("whenMatched", "replace")
+                        .append("whenNotMatched", "insert")));
+
+        return reactiveMongoTemplate.getCollection("kpi")
+                .flatMap(collection -> Mono.from(collection.aggregate(pipeline).allowDiskUse(true).toCollection()));
+    }
+
+    // Totales de (proveedor, campaña) que ya no tienen KPIs, p. ej. porque la campaña cambió de proveedor
+    private Mono<Long> removeStaleCampaignTotals(Criteria scope, Object refreshedAt) {
+        Query query = new Query(new Criteria().andOperator(scope, Criteria.where("updatedDate").lt(refreshedAt)));
+        return reactiveMongoTemplate.remove(query, CAMPAIGN_TOTALS_COLLECTION)
+                .map(DeleteResult::getDeletedCount);
+    }
+
+    private Flux<String> findTotalsProviderIds(Criteria scope) {
+        return reactiveMongoTemplate.findDistinct(new Query(scope), "providerId", CAMPAIGN_TOTALS_COLLECTION, String.class);
+    }
+}
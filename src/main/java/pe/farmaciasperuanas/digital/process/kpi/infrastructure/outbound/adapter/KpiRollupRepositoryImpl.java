@@ -0,0 +1,126 @@
+package pe.farmaciasperuanas.digital.process.kpi.infrastructure.outbound.adapter;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Repository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Kpi;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.KpiPeriod;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.KpiRollupRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class KpiRollupRepositoryImpl implements KpiRollupRepository {
+
+    private static final String ROLLUPS_COLLECTION = "kpi_rollups";
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Override
+    public Mono<Long> refresh(LocalDate startDate, LocalDate endDate) {
+        List<LocalDate> days = new ArrayList<>();
+        for (LocalDate day = startDate; !day.isAfter(endDate); day = day.plusDays(1)) {
+            days.add(day);
+        }
+        return refresh(days);
+    }
+
+    @Override
+    public Mono<Long> refresh(Collection<LocalDate> days) {
+        // Cada semana y mes se recalcula una sola vez aunque varios días caigan en el mismo bucket
+        Set<LocalDate> weeks = new TreeSet<>();
+        Set<LocalDate> months = new TreeSet<>();
+        for (LocalDate day : days) {
+            weeks.add(day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)));
+            months.add(day.withDayOfMonth(1));
+        }
+
+        return Flux.concat(
+                        Flux.fromIterable(weeks).concatMap(week -> refreshBucket(KpiPeriod.WEEK, week, week.plusDays(6))),
+                        Flux.fromIterable(months).concatMap(month -> refreshBucket(KpiPeriod.MONTH, month,
+                                month.with(TemporalAdjusters.lastDayOfMonth()))))
+                .then(Mono.just((long) (weeks.size() + months.size())))
+                .doOnSuccess(count -> log.debug("Rollups recalculados para {} días: {}", days.size(), count));
+    }
+
+    @Override
+    public Flux<Kpi> findByPeriodRange(String granularity, LocalDate startDate, LocalDate endDate) {
+        Query query = new Query(Criteria.where("granularity").is(granularity)
+                .and("period").gte(startDate.toString()).lte(endDate.toString()))
+                .with(Sort.by(Sort.Direction.ASC, "period"));
+        return reactiveMongoTemplate.find(query, Kpi.class, ROLLUPS_COLLECTION);
+    }
+
+    // Suma los KPIs diarios del bucket y reemplaza su rollup con $merge; al partir siempre de los
+    // diarios, reprocesar un día no duplica valores. sourceUpdatedDate es el último updatedDate de los
+    // diarios leídos: un recálculo que leyó antes que otro no reemplaza el rollup más reciente
+    private Mono<Void> refreshBucket(String granularity, LocalDate bucketStart, LocalDate bucketEnd) {
+        List<Document> pipeline = List.of(
+                new Document("$match", new Document("granularity", KpiPeriod.DAY)
+                        .append("period", new Document("$gte", bucketStart.toString())
+                                .append("$lte", bucketEnd.toString()))),
+                new Document("$group", new Document("_id", new Document("campaignId", "$campaignId")
+                        .append("campaignSubId", "$campaignSubId")
+                        .append("kpiId", "$kpiId"))
+                        .append("providerId", new Document("$max", "$providerId"))
+                        .append("kpiDescription", new Document("$first", "$kpiDescription"))
+                        .append("type", new Document("$first", "$type"))
+                        .append("value", new Document("$sum", "$value"))
+                        .append("numerator", new Document("$sum", "$numerator"))
+                        .append("denominator", new Document("$sum", "$denominator"))
+                        .append("sourceUpdatedDate", new Document("$max", "$updatedDate"))),
+                new Document("$project", new Document("_id", new Document("$concat", List.of(
+                        granularity, "|", bucketStart.toString(), "|", "$_id.kpiId", "|",
+                        new Document("$ifNull", List.of("$_id.campaignId", "")), "|",
+                        new Document("$ifNull", List.of("$_id.campaignSubId", "")))))
+                        .append("campaignId", "$_id.campaignId")
+                        .append("campaignSubId", "$_id.campaignSubId")
+                        .append("kpiId", "$_id.kpiId")
+                        .append("providerId", 1)
+                        .append("kpiDescription", 1)
+                        .append("type", 1)
+                        .append("numerator", 1)
+                        .append("denominator", 1)
+                        .append("sourceUpdatedDate", 1)
+                        // Las tasas se recalculan con los totales del bucket en lugar de promediar las diarias
+                        .append("value", new Document("$cond", List.of(
+                                new Document("$eq", List.of("$type", "Porcentaje")),
+                                new Document("$cond", List.of(
+                                        new Document("$gt", List.of("$denominator", 0)),
+                                        new Document("$multiply", List.of(
+                                                new Document("$divide", List.of("$numerator", "$denominator")), 100)),
+                                        0)),
+                                "$value")))
+                        .append("status", "A")
+                        .append("period", bucketStart.toString())
+                        .append("granularity", granularity)
+                        // Misma conversión de zona que las escrituras con entidades
+                        .append("updatedDate", reactiveMongoTemplate.getConverter().convertToMongoType(LocalDateTime.now()))),
+                new Document("$merge", new Document("into", ROLLUPS_COLLECTION)
+                        .append("whenMatched", List.of(new Document("$replaceWith", new Document("$cond", List.of(
+                                new Document("$gte", List.of("$$new.sourceUpdatedDate", "$sourceUpdatedDate")),
+                                "$$new",
+                                "$$ROOT")))))
+                        .append("whenNotMatched", "insert")));
+
+        return reactiveMongoTemplate.getCollection("kpi")
+                .flatMap(collection -> Mono.from(collection.aggregate(pipeline).allowDiskUse(true).toCollection()));
+    }
+}
@@ -2,6 +2,10 @@ package pe.farmaciasperuanas.digital.process.kpi.infrastructure.outbound.adapter
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
@@ -41,28 +45,62 @@ public class MetricsRepositoryImpl implements MetricsRepository {
         return reactiveMongoTemplate.findAll(Metrics.class);
     }
 
+    @Override
+    public Flux<Metrics> findPage(String afterProviderId, int limit) {
+        // Cursor sobre el índice único de providerId
+        Criteria criteria = afterProviderId != null
+                ? Criteria.where("providerId").gt(afterProviderId)
+                : new Criteria();
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "providerId"))
+                .limit(limit);
+        return reactiveMongoTemplate.find(query, Metrics.class);
+    }
+
     @Override
     public Mono<Metrics> updateMetrics(Metrics metrics) {
-        Query query = new Query(Criteria.where("providerId").is(metrics.getProviderId()));
-        metrics.setUpdatedDate(LocalDateTime.now());
+        // Upsert atómico en un solo viaje; el índice único de providerId evita duplicados entre lotes concurrentes
+        return reactiveMongoTemplate.findAndModify(
+                byProviderId(metrics),
+                metricsUpdate(metrics, LocalDateTime.now()),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                Metrics.class);
+    }
 
-        // Check if the document exists
-        return reactiveMongoTemplate.exists(query, Metrics.class)
-                .flatMap(exists -> {
-                    if (exists) {
-                        // Update existing document
-                        Update update = new Update()
-                                .set("totalActiveCampaigns", metrics.getTotalActiveCampaigns())
-                                .set("totalInvestmentPeriod", metrics.getTotalInvestmentPeriod())
-                                .set("totalInvestmentForBrand", metrics.getTotalInvestmentForBrand())
-                                .set("ventaTotal", metrics.getVentaTotal())
-                                .set("updatedDate", metrics.getUpdatedDate());
+    @Override
+    public Mono<Long> upsertAll(Flux<Metrics> metrics) {
+        return metrics
+                .collectList()
+                .flatMap(providerMetrics -> {
+                    if (providerMetrics.isEmpty()) {
+                        return Mono.just(0L);
+                    }
 
-                        return reactiveMongoTemplate.findAndModify(query, update, Metrics.class);
-                    } else {
-                        // Insert new document
-                        return reactiveMongoTemplate.save(metrics);
+                    // Todos los proveedores en una sola escritura bulk
+                    LocalDateTime now = LocalDateTime.now();
+                    ReactiveBulkOperations bulkOps =
+                            reactiveMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Metrics.class);
+                    for (Metrics metric : providerMetrics) {
+                        bulkOps.upsert(byProviderId(metric), metricsUpdate(metric, now));
                     }
+
+                    return bulkOps.execute()
+                            .map(result -> (long) result.getUpserts().size() + result.getModifiedCount());
                 });
     }
+
+    private Query byProviderId(Metrics metrics) {
+        return new Query(Criteria.where("providerId").is(metrics.getProviderId()));
+    }
+
+    private Update metricsUpdate(Metrics metrics, LocalDateTime now) {
+        return new Update()
+                .set("totalActiveCampaigns", metrics.getTotalActiveCampaigns())
+                .set("totalInvestmentPeriod", metrics.getTotalInvestmentPeriod())
+                .set("totalInvestmentForBrand", metrics.getTotalInvestmentForBrand())
+                .set("ventaTotal", metrics.getVentaTotal())
+                .set("updatedDate", now)
+                .setOnInsert("createdDate", now)
+                .setOnInsert("createdUser", metrics.getCreatedUser());
+    }
 }
\ No newline at end of file
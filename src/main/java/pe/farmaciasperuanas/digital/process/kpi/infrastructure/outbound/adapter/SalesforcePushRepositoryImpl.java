@@ -0,0 +1,120 @@
+package pe.farmaciasperuanas.digital.process.kpi.infrastructure.outbound.adapter;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.MessageCount;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.SalesforcePushRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class SalesforcePushRepositoryImpl implements SalesforcePushRepository {
+
+    private static final String COLLECTION = "salesforce_push";
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Override
+    public Mono<String> findLatestFechaProceso() {
+        Query query = new Query()
+                .with(Sort.by(Sort.Direction.DESC, "FechaProceso"))
+                .limit(1);
+        query.fields().include("FechaProceso");
+        return reactiveMongoTemplate.findOne(query, Document.class, COLLECTION)
+                .mapNotNull(document -> document.getString("FechaProceso"));
+    }
+
+    @Override
+    public Mono<Long> classifyChannels(LocalDate startDate, LocalDate endDate) {
+        // Rango y channel nulo sobre el índice FechaProceso_channel; sin documentos pendientes no escribe nada
+        return classify(fechaProcesoBetween(startDate, endDate));
+    }
+
+    @Override
+    public Mono<Long> backfillChannels(int batchSize) {
+        // Recorre el _id en orden una sola vez; cada lote se clasifica con un updateMany por canal
+        return backfillBatch(null, batchSize)
+                .expand(batch -> backfillBatch(batch.getT1(), batchSize))
+                .map(Tuple2::getT2)
+                .reduce(0L, Long::sum)
+                .doOnNext(classified -> log.info("Backfill de canal en {}: {} documentos clasificados",
+                        COLLECTION, classified));
+    }
+
+    private Mono<Tuple2<Object, Long>> backfillBatch(Object afterId, int batchSize) {
+        Criteria pending = Criteria.where("channel").is(null);
+        if (afterId != null) {
+            pending = pending.and("_id").gt(afterId);
+        }
+        Query query = new Query(pending)
+                .with(Sort.by(Sort.Direction.ASC, "_id"))
+                .limit(batchSize);
+        query.fields().include("_id");
+
+        return reactiveMongoTemplate.find(query, Document.class, COLLECTION)
+                .map(document -> document.get("_id"))
+                .collectList()
+                .filter(ids -> !ids.isEmpty())
+                .flatMap(ids -> classify(Criteria.where("_id").in(ids))
+                        .map(classified -> Tuples.of(ids.get(ids.size() - 1), classified)));
+    }
+
+    private Mono<Long> classify(Criteria scope) {
+        // Precedencia: web si MessageName contiene "web", si no app si tiene AppName; el resto queda como other
+        return classify(scope, Criteria.where("MessageName").regex("web", "i"), CHANNEL_WEB)
+                .concatWith(classify(scope, Criteria.where("AppName").exists(true), CHANNEL_APP))
+                .concatWith(classify(scope, new Criteria(), CHANNEL_OTHER))
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<Long> classify(Criteria scope, Criteria filter, String channel) {
+        Query query = new Query(new Criteria().andOperator(scope, Criteria.where("channel").is(null), filter));
+        return reactiveMongoTemplate.updateMulti(query, new Update().set("channel", channel), COLLECTION)
+                .map(UpdateResult::getModifiedCount);
+    }
+
+    @Override
+    public Flux<MessageCount> countByMessageName(LocalDate startDate, LocalDate endDate, Collection<String> channels) {
+        // Rango y canal sobre el índice FechaProceso_channel, que cubre la consulta; solo viajan filas por mensaje
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(fechaProcesoBetween(startDate, endDate).and("channel").in(channels)),
+                Aggregation.group("channel", "MessageName")
+                        .count().as("sentCount")
+                        .sum(ConditionalOperators.when(Criteria.where("MessageOpened").is(true))
+                                .then(1)
+                                .otherwise(0)).as("openedCount"),
+                Aggregation.project("sentCount", "openedCount")
+                        .and("channel").as("channel")
+                        .and("MessageName").as("messageName")
+                        .andExclude("_id")
+        ).withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+        return reactiveMongoTemplate.aggregate(aggregation, COLLECTION, MessageCount.class);
+    }
+
+    private Criteria fechaProcesoBetween(LocalDate startDate, LocalDate endDate) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        return Criteria.where("FechaProceso")
+                .gte(startDate.format(formatter))
+                .lte(endDate.format(formatter));
+    }
+}
@@ -2,13 +2,19 @@ package pe.farmaciasperuanas.digital.process.kpi.infrastructure.outbound.adapter
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Repository;
 import pe.farmaciasperuanas.digital.process.kpi.domain.entity.SalesforceSents;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.SendIdCount;
 import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.SalesforceSentsRepository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -45,4 +51,33 @@ public class SalesforceSentsRepositoryImpl implements SalesforceSentsRepository
         Query query = new Query(Criteria.where("fechaProceso").is(fechaProceso));
         return reactiveMongoTemplate.find(query, SalesforceSents.class);
     }
+
+    @Override
+    public Flux<SendIdCount> countBySendId(LocalDateTime startDate, LocalDateTime endDate) {
+        // Solo viajan filas (sendID, count, uniqueCount), no los documentos completos
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("eventDate")
+                        .gte(startDate)
+                        .lte(endDate)),
+                Aggregation.group("sendID")
+                        .count().as("count")
+                        .sum(ConditionalOperators.when(Criteria.where("isUnique").is(true))
+                                .then(1)
+                                .otherwise(0)).as("uniqueCount"),
+                Aggregation.project("count", "uniqueCount")
+                        .and("sendID").previousOperation()
+        ).withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+        return reactiveMongoTemplate.aggregate(aggregation, "salesforce_sents", SendIdCount.class);
+    }
+
+    @Override
+    public Mono<LocalDateTime> findLatestEventDate() {
+        Query query = new Query()
+                .with(Sort.by(Sort.Direction.DESC, "eventDate"))
+                .limit(1);
+        query.fields().include("eventDate");
+        return reactiveMongoTemplate.findOne(query, SalesforceSents.class)
+                .mapNotNull(SalesforceSents::getEventDate);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package pe.farmaciasperuanas.digital.process.kpi.infrastructure.outbound.adapter;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Repository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.SendCampaign;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.SendCampaignRepository;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class SendCampaignRepositoryImpl implements SendCampaignRepository {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Override
+    public Flux<SendCampaign> findBySendIds(Collection<Integer> sendIds) {
+        Query query = new Query(Criteria.where("sendID").in(sendIds));
+        return reactiveMongoTemplate.find(query, SendCampaign.class);
+    }
+}
@@ -0,0 +1,30 @@
+package pe.farmaciasperuanas.digital.process.kpi.infrastructure.outbound.adapter;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Repository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.StreamToken;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.StreamTokenRepository;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class StreamTokenRepositoryImpl implements StreamTokenRepository {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Override
+    public Mono<StreamToken> findBySource(String source) {
+        return reactiveMongoTemplate.findById(source, StreamToken.class);
+    }
+
+    @Override
+    public Mono<StreamToken> save(StreamToken streamToken) {
+        streamToken.setUpdatedDate(LocalDateTime.now());
+        return reactiveMongoTemplate.save(streamToken);
+    }
+}
@@ -0,0 +1,30 @@
+package pe.farmaciasperuanas.digital.process.kpi.infrastructure.outbound.adapter;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Repository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Watermark;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.WatermarkRepository;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class WatermarkRepositoryImpl implements WatermarkRepository {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Override
+    public Mono<Watermark> findBySource(String source) {
+        return reactiveMongoTemplate.findById(source, Watermark.class);
+    }
+
+    @Override
+    public Mono<Watermark> save(Watermark watermark) {
+        watermark.setUpdatedDate(LocalDateTime.now());
+        return reactiveMongoTemplate.save(watermark);
+    }
+}
@@ -0,0 +1,143 @@
+package pe.farmaciasperuanas.digital.process.kpi.infrastructure.outbound.adapter;
+
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.WorkUnit;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.WorkUnitRepository;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class WorkUnitRepositoryImpl implements WorkUnitRepository {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Override
+    public Mono<Long> enqueue(List<WorkUnit> workUnits) {
+        if (workUnits.isEmpty()) {
+            return Mono.just(0L);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        ReactiveBulkOperations bulkOps = reactiveMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, WorkUnit.class);
+        for (WorkUnit workUnit : workUnits) {
+            // Solo inserta las unidades que faltan; las existentes se reencolan abajo según su estado
+            Query query = new Query(Criteria.where("id").is(workUnit.getId()));
+            Update update = new Update()
+                    .setOnInsert("source", workUnit.getSource())
+                    .setOnInsert("day", workUnit.getDay())
+                    .setOnInsert("status", "PENDING")
+                    .setOnInsert("attempts", 0)
+                    .setOnInsert("createdDate", now)
+                    .setOnInsert("updatedDate", now);
+            bulkOps.upsert(query, update);
+        }
+
+        // Las unidades DONE y FAILED del periodo vuelven a PENDING con sus intentos reiniciados para que
+        // encolar de nuevo el rango lo reprocese; las CLAIMED no se tocan porque otra réplica las está ejecutando
+        List<String> ids = workUnits.stream().map(WorkUnit::getId).toList();
+        Query finishedQuery = new Query(Criteria.where("id").in(ids).and("status").in("DONE", "FAILED"));
+        Update retry = new Update()
+                .set("status", "PENDING")
+                .set("attempts", 0)
+                .set("updatedDate", now)
+                .unset("owner")
+                .unset("leaseUntil")
+                .unset("errorMessage");
+
+        return bulkOps.execute()
+                .map(result -> (long) result.getUpserts().size())
+                .flatMap(inserted -> reactiveMongoTemplate.updateMulti(finishedQuery, retry, WorkUnit.class)
+                        .map(result -> inserted + result.getModifiedCount()));
+    }
+
+    @Override
+    public Mono<WorkUnit> claim(String owner, Duration lease, int maxAttempts) {
+        LocalDateTime now = LocalDateTime.now();
+        Query query = new Query(new Criteria().andOperator(
+                Criteria.where("attempts").lt(maxAttempts),
+                new Criteria().orOperator(
+                        Criteria.where("status").is("PENDING"),
+                        Criteria.where("status").is("CLAIMED").and("leaseUntil").lt(now))))
+                .with(Sort.by(Sort.Direction.ASC, "day"));
+        Update update = new Update()
+                .set("status", "CLAIMED")
+                .set("owner", owner)
+                .set("leaseUntil", now.plus(lease))
+                .set("updatedDate", now)
+                .inc("attempts", 1);
+
+        return reactiveMongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), WorkUnit.class);
+    }
+
+    @Override
+    public Mono<Boolean> renew(WorkUnit workUnit, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        Query query = new Query(Criteria.where("id").is(workUnit.getId())
+                .and("owner").is(workUnit.getOwner())
+                .and("status").is("CLAIMED"));
+        Update update = new Update()
+                .set("leaseUntil", now.plus(lease))
+                .set("updatedDate", now);
+        return reactiveMongoTemplate.updateFirst(query, update, WorkUnit.class)
+                .map(result -> result.getMatchedCount() > 0);
+    }
+
+    @Override
+    public Mono<Long> expire(int maxAttempts) {
+        // Una unidad CLAIMED con el lease vencido y sin intentos restantes ya no la reclama nadie
+        LocalDateTime now = LocalDateTime.now();
+        Query query = new Query(Criteria.where("status").is("CLAIMED")
+                .and("leaseUntil").lt(now)
+                .and("attempts").gte(maxAttempts));
+        Update update = new Update()
+                .set("status", "FAILED")
+                .set("errorMessage", "Lease vencido tras agotar los intentos")
+                .set("updatedDate", now)
+                .unset("leaseUntil");
+        return reactiveMongoTemplate.updateMulti(query, update, WorkUnit.class)
+                .map(UpdateResult::getModifiedCount);
+    }
+
+    @Override
+    public Mono<WorkUnit> complete(WorkUnit workUnit) {
+        Query query = new Query(Criteria.where("id").is(workUnit.getId()).and("owner").is(workUnit.getOwner()));
+        Update update = new Update()
+                .set("status", "DONE")
+                .set("updatedDate", LocalDateTime.now())
+                .unset("leaseUntil");
+        return reactiveMongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), WorkUnit.class);
+    }
+
+    @Override
+    public Mono<WorkUnit> fail(WorkUnit workUnit, String errorMessage, int maxAttempts) {
+        // Vuelve a PENDING para otro intento hasta agotar maxAttempts
+        String status = workUnit.getAttempts() != null && workUnit.getAttempts() >= maxAttempts
+                ? "FAILED" : "PENDING";
+        Query query = new Query(Criteria.where("id").is(workUnit.getId()).and("owner").is(workUnit.getOwner()));
+        Update update = new Update()
+                .set("status", status)
+                .set("errorMessage", errorMessage)
+                .set("updatedDate", LocalDateTime.now())
+                .unset("leaseUntil");
+        return reactiveMongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), WorkUnit.class);
+    }
+}
@@ -0,0 +1,58 @@
+package pe.farmaciasperuanas.digital.process.kpi.application.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private final AdaptiveConcurrencyLimiter limiter =
+            new AdaptiveConcurrencyLimiter(new SimpleMeterRegistry(), 1, 1, 250, 0.05, 0.5);
+
+    @Test
+    void returnsTheSlotWhenTheSubscriberCancelsBeforeReceivingThePermit() {
+        limiter.acquire().subscribe(new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                cancel();
+            }
+        });
+
+        assertThat(limiter.getInFlight()).isZero();
+        assertThat(limiter.acquire().block()).isNotNull();
+        assertThat(limiter.getInFlight()).isEqualTo(1);
+    }
+
+    @Test
+    void cancelledWaiterDoesNotKeepTheSlot() {
+        AdaptiveConcurrencyLimiter.Permit first = limiter.acquire().block();
+        Disposable waiting = limiter.acquire().subscribe();
+        waiting.dispose();
+
+        first.release(true);
+
+        assertThat(limiter.getInFlight()).isZero();
+        AtomicReference<AdaptiveConcurrencyLimiter.Permit> next = new AtomicReference<>();
+        limiter.acquire().subscribe(next::set);
+        assertThat(next.get()).isNotNull();
+    }
+
+    @Test
+    void discardedPermitDoesNotLowerTheLimit() {
+        AdaptiveConcurrencyLimiter adaptive =
+                new AdaptiveConcurrencyLimiter(new SimpleMeterRegistry(), 1, 4, 250, 0.05, 0.5);
+        adaptive.acquire().block().release(true);
+        assertThat(adaptive.getLimit()).isEqualTo(2);
+
+        adaptive.acquire().block().discard();
+
+        assertThat(adaptive.getLimit()).isEqualTo(2);
+        assertThat(adaptive.getInFlight()).isZero();
+    }
+}
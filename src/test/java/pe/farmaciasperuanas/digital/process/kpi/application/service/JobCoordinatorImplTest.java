@@ -0,0 +1,60 @@
+package pe.farmaciasperuanas.digital.process.kpi.application.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.JobLock;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.KpiRunSummary;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.JobLockRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.JobRunRepository;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class JobCoordinatorImplTest {
+
+    private final JobLockRepository jobLockRepository = mock(JobLockRepository.class);
+    private final JobRunRepository jobRunRepository = mock(JobRunRepository.class);
+
+    private final JobCoordinatorImpl coordinator = new JobCoordinatorImpl(jobLockRepository, jobRunRepository);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(coordinator, "leaseMillis", 30L);
+        when(jobRunRepository.save(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(jobLockRepository.release(anyString(), anyString())).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void cancelsTheJobWhenAnotherInstanceTakesTheLease() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        when(jobLockRepository.acquire(anyString(), anyString(), any()))
+                .thenReturn(Mono.just(new JobLock()), Mono.empty());
+
+        StepVerifier.create(coordinator.runExclusive("kpi-processing",
+                        Mono.<KpiRunSummary>never().doOnCancel(() -> cancelled.set(true))))
+                .assertNext(run -> assertThat(run.getStatus()).isEqualTo("FENCED"))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        assertThat(cancelled).isTrue();
+    }
+
+    @Test
+    void completesWhileTheLeaseKeepsBeingRenewed() {
+        when(jobLockRepository.acquire(anyString(), anyString(), any())).thenReturn(Mono.just(new JobLock()));
+
+        StepVerifier.create(coordinator.runExclusive("kpi-processing",
+                        Mono.delay(Duration.ofMillis(100)).thenReturn(new KpiRunSummary())))
+                .assertNext(run -> assertThat(run.getStatus()).isEqualTo("COMPLETED"))
+                .verifyComplete();
+    }
+}
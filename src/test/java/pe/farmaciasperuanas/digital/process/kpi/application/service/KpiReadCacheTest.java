@@ -0,0 +1,72 @@
+package pe.farmaciasperuanas.digital.process.kpi.application.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Kpi;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.KpiQuery;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.KpiRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class KpiReadCacheTest {
+
+    private final KpiRepository kpiRepository = mock(KpiRepository.class);
+    private final KpiReadCache cache = new KpiReadCache(kpiRepository, new SimpleMeterRegistry(), 1_000, 300);
+
+    private final KpiQuery query = KpiQuery.builder().providerId("P1").build();
+
+    @Test
+    void doesNotKeepAPageLoadedWhileItWasBeingEvicted() {
+        when(kpiRepository.findProviderIdsUpdatedSince(any())).thenReturn(Flux.just("P1"));
+        when(kpiRepository.findCampaignIdsUpdatedSince(any())).thenReturn(Flux.just("20250305"));
+        AtomicInteger loads = new AtomicInteger();
+        Sinks.One<List<Kpi>> slowRead = Sinks.one();
+
+        // Lectura que empezó antes de que terminara el lote y responde con datos anteriores
+        Flux<Kpi> inFlight = cache.kpis(query, () -> {
+            loads.incrementAndGet();
+            return slowRead.asMono().flatMapIterable(page -> page);
+        });
+        StepVerifier.create(inFlight)
+                .then(() -> StepVerifier.create(cache.evictTouchedSince(LocalDateTime.now())).verifyComplete())
+                .then(() -> slowRead.tryEmitValue(List.of(kpi(1.0))))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        StepVerifier.create(cache.kpis(query, () -> {
+                    loads.incrementAndGet();
+                    return Flux.just(kpi(2.0));
+                }))
+                .assertNext(kpi -> assertThat(kpi.getValue()).isEqualTo(2.0))
+                .verifyComplete();
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void servesRepeatedReadsFromTheCache() {
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(cache.kpis(query, () -> {
+                loads.incrementAndGet();
+                return Flux.just(kpi(1.0));
+            })).expectNextCount(1).verifyComplete();
+        }
+
+        assertThat(loads).hasValue(1);
+    }
+
+    private static Kpi kpi(double value) {
+        return Kpi.builder().providerId("P1").campaignId("20250305").value(value).build();
+    }
+}
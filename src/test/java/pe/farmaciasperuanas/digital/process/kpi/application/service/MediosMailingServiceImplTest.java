@@ -0,0 +1,82 @@
+package pe.farmaciasperuanas.digital.process.kpi.application.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Kpi;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.SendCampaign;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.SendIdCount;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.KpiRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.SalesforceClicksRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.SalesforceOpensRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.SalesforceSentsRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.UtmParserService;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MediosMailingServiceImplTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 5);
+
+    private final SalesforceClicksRepository clicksRepository = mock(SalesforceClicksRepository.class);
+    private final SalesforceOpensRepository opensRepository = mock(SalesforceOpensRepository.class);
+    private final SalesforceSentsRepository sentsRepository = mock(SalesforceSentsRepository.class);
+    private final KpiRepository kpiRepository = mock(KpiRepository.class);
+    private final UtmParserService utmParserService = mock(UtmParserService.class);
+
+    private final List<Kpi> written = new CopyOnWriteArrayList<>();
+
+    private MediosMailingServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        when(kpiRepository.upsertAll(any())).thenAnswer(invocation -> {
+            Flux<Kpi> kpis = invocation.getArgument(0);
+            return kpis.doOnNext(written::add).count();
+        });
+        service = new MediosMailingServiceImpl(clicksRepository, opensRepository, sentsRepository,
+                kpiRepository, utmParserService, new KpiPipelineMetrics(new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void sumsSendIdsOfTheSameCampaignIntoOneKpiPerNaturalKey() {
+        when(opensRepository.countBySendId(any(), any())).thenReturn(Flux.just(count(1, 10), count(2, 30)));
+        when(clicksRepository.countBySendId(any(), any())).thenReturn(Flux.just(count(1, 2), count(2, 4)));
+        when(sentsRepository.countBySendId(any(), any())).thenReturn(Flux.just(count(1, 100), count(2, 100)));
+        when(utmParserService.resolveSendIds(any())).thenReturn(Mono.just(Map.of(
+                1, campaign(1, "20250305"),
+                2, campaign(2, "20250305"))));
+
+        StepVerifier.create(service.processMailingPadreKpis(DAY, DAY)).verifyComplete();
+
+        Map<String, Kpi> byKpiId = written.stream().collect(Collectors.toMap(Kpi::getKpiId, Function.identity()));
+        assertThat(written).hasSize(5);
+        assertThat(written).allSatisfy(kpi -> assertThat(kpi.getCampaignId()).isEqualTo("20250305"));
+        assertThat(byKpiId.get("MP-I").getValue()).isEqualTo(40.0);
+        assertThat(byKpiId.get("MP-C").getValue()).isEqualTo(6.0);
+        assertThat(byKpiId.get("MP-A").getValue()).isEqualTo(200.0);
+        assertThat(byKpiId.get("MP-OR").getValue()).isEqualTo(20.0);
+        assertThat(byKpiId.get("MP-CR").getValue()).isEqualTo(15.0);
+    }
+
+    private static SendIdCount count(int sendId, long count) {
+        return SendIdCount.builder().sendID(sendId).count(count).build();
+    }
+
+    private static SendCampaign campaign(int sendId, String campaignId) {
+        return SendCampaign.builder().sendID(sendId).campaignId(campaignId).providerId("P1").build();
+    }
+}
@@ -0,0 +1,80 @@
+package pe.farmaciasperuanas.digital.process.kpi.application.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Kpi;
+import pe.farmaciasperuanas.digital.process.kpi.domain.model.MessageCount;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.KpiRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.SalesforcePushRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.UtmParserService;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MediosPushServiceImplTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 5);
+
+    private final SalesforcePushRepository pushRepository = mock(SalesforcePushRepository.class);
+    private final KpiRepository kpiRepository = mock(KpiRepository.class);
+
+    private final List<Kpi> written = new CopyOnWriteArrayList<>();
+
+    private MediosPushServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        when(kpiRepository.upsertAll(any())).thenAnswer(invocation -> {
+            Flux<Kpi> kpis = invocation.getArgument(0);
+            return kpis.doOnNext(written::add).count();
+        });
+        service = new MediosPushServiceImpl(pushRepository, kpiRepository, mock(UtmParserService.class),
+                new KpiPipelineMetrics(new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void sumsMessagesOfTheSameCampaignIntoOneKpiPerNaturalKey() {
+        when(pushRepository.countByMessageName(any(), any(), any())).thenReturn(Flux.just(
+                count("20250305_sfmc_omega3_app_push", 100, 10),
+                count("20250305_sfmc_vitaminas_app_push", 300, 50)));
+
+        StepVerifier.create(service.processPushAppKpis(DAY, DAY)).verifyComplete();
+
+        Map<String, Kpi> byKpiId = written.stream().collect(Collectors.toMap(Kpi::getKpiId, Function.identity()));
+        assertThat(written).hasSize(3);
+        assertThat(written).allSatisfy(kpi -> assertThat(kpi.getCampaignId()).isEqualTo("20250305"));
+        assertThat(byKpiId.get("PA-A").getValue()).isEqualTo(400.0);
+        assertThat(byKpiId.get("PA-I").getValue()).isEqualTo(60.0);
+        assertThat(byKpiId.get("PA-OR").getValue()).isEqualTo(15.0);
+    }
+
+    @Test
+    void classifiesOnlyTheLookbackWindow() {
+        ReflectionTestUtils.setField(service, "channelLookbackDays", 3);
+        when(pushRepository.classifyChannels(any(), any())).thenReturn(Mono.just(5L));
+
+        StepVerifier.create(service.classifyRecentPushChannels()).expectNext(5L).verifyComplete();
+
+        LocalDate today = LocalDate.now();
+        verify(pushRepository).classifyChannels(today.minusDays(3), today);
+    }
+
+    private static MessageCount count(String messageName, long sent, long opened) {
+        return new MessageCount(SalesforcePushRepository.CHANNEL_APP, messageName, sent, opened);
+    }
+}
@@ -0,0 +1,59 @@
+package pe.farmaciasperuanas.digital.process.kpi.application.service;
+
+import org.junit.jupiter.api.Test;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.Metrics;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.KpiRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.MetricsRepository;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MetricsServiceImplTest {
+
+    private static final LocalDateTime SINCE = LocalDateTime.of(2025, 3, 5, 6, 0);
+
+    private final KpiRepository kpiRepository = mock(KpiRepository.class);
+    private final MetricsRepository metricsRepository = mock(MetricsRepository.class);
+
+    private final MetricsServiceImpl service =
+            new MetricsServiceImpl(kpiRepository, metricsRepository, mock(KpiReadCache.class));
+
+    @Test
+    void refreshesOnlyTouchedCampaignsAndTheirProviders() {
+        when(kpiRepository.findCampaignIdsUpdatedSince(SINCE)).thenReturn(Flux.just("20250305"));
+        when(kpiRepository.refreshCampaignTotals(List.of("20250305"))).thenReturn(Flux.just("P1", "P2"));
+        when(kpiRepository.aggregateMetricsFromCampaignTotals(List.of("P1", "P2"))).thenReturn(Flux.just(
+                Metrics.builder().providerId("P1").totalActiveCampaigns(4).totalInvestmentPeriod(400.0).build(),
+                Metrics.builder().providerId("P2").totalActiveCampaigns(0).totalInvestmentPeriod(0.0).build()));
+        when(metricsRepository.upsertAll(any())).thenAnswer(invocation -> {
+            Flux<Metrics> metrics = invocation.getArgument(0);
+            return metrics.collectList().map(list -> {
+                assertThat(list).extracting(Metrics::getTotalInvestmentForBrand).containsExactly(100.0, 0.0);
+                return (long) list.size();
+            });
+        });
+
+        StepVerifier.create(service.calculateGeneralMetrics(SINCE)).verifyComplete();
+
+        verify(kpiRepository, never()).aggregateMetricsByProvider(any());
+    }
+
+    @Test
+    void skipsTheRefreshWhenNoCampaignChanged() {
+        when(kpiRepository.findCampaignIdsUpdatedSince(SINCE)).thenReturn(Flux.empty());
+
+        StepVerifier.create(service.calculateGeneralMetrics(SINCE)).verifyComplete();
+
+        verify(kpiRepository, never()).refreshCampaignTotals(any());
+        verify(metricsRepository, never()).upsertAll(any());
+    }
+}
@@ -0,0 +1,113 @@
+package pe.farmaciasperuanas.digital.process.kpi.application.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.WorkUnit;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.KpiRollupRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.WorkUnitRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.MediosMailingService;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.MediosPushService;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.MetricsService;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PartitionedProcessingServiceImplTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 5);
+
+    private final WorkUnitRepository workUnitRepository = mock(WorkUnitRepository.class);
+    private final KpiRollupRepository kpiRollupRepository = mock(KpiRollupRepository.class);
+    private final MediosMailingService mediosMailingService = mock(MediosMailingService.class);
+    private final MetricsService metricsService = mock(MetricsService.class);
+    private final KpiReadCache kpiReadCache = mock(KpiReadCache.class);
+
+    private final WorkUnit workUnit = WorkUnit.builder()
+            .id("MAILING_PADRE_" + DAY).source("MAILING_PADRE").day(DAY).owner("kpi-1").attempts(1).build();
+
+    private PartitionedProcessingServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        service = new PartitionedProcessingServiceImpl(workUnitRepository, kpiRollupRepository,
+                mediosMailingService, mock(MediosPushService.class), metricsService, kpiReadCache);
+        ReflectionTestUtils.setField(service, "concurrency", 1);
+        ReflectionTestUtils.setField(service, "leaseMillis", 30L);
+        ReflectionTestUtils.setField(service, "maxAttempts", 3);
+
+        when(workUnitRepository.expire(anyInt())).thenReturn(Mono.just(0L));
+        when(workUnitRepository.claim(anyString(), any(), anyInt()))
+                .thenReturn(Mono.just(workUnit), Mono.empty());
+        when(kpiRollupRepository.refresh(anyCollection())).thenReturn(Mono.just(0L));
+        when(kpiReadCache.evictTouchedSince(any())).thenReturn(Mono.empty());
+        when(metricsService.calculateGeneralMetrics(any())).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void renewsTheLeaseWhileTheUnitIsProcessing() {
+        when(workUnitRepository.renew(any(), any())).thenReturn(Mono.just(true));
+        when(mediosMailingService.processMailingPadreKpis(DAY, DAY))
+                .thenReturn(Mono.delay(Duration.ofMillis(100)).then());
+        when(workUnitRepository.complete(workUnit)).thenReturn(Mono.just(workUnit));
+
+        StepVerifier.create(service.drain()).expectNext(1L).verifyComplete();
+
+        verify(workUnitRepository, atLeastOnce()).renew(eq(workUnit), eq(Duration.ofMillis(30)));
+        verify(workUnitRepository).complete(workUnit);
+    }
+
+    @Test
+    void cancelsProcessingWhenTheLeaseIsLost() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        when(workUnitRepository.renew(any(), any())).thenReturn(Mono.just(false));
+        when(mediosMailingService.processMailingPadreKpis(DAY, DAY))
+                .thenReturn(Mono.<Void>never().doOnCancel(() -> cancelled.set(true)));
+        when(workUnitRepository.fail(eq(workUnit), anyString(), anyInt())).thenReturn(Mono.empty());
+
+        StepVerifier.create(service.drain()).expectNext(1L).expectComplete().verify(Duration.ofSeconds(5));
+
+        assertThat(cancelled).isTrue();
+        verify(workUnitRepository).fail(eq(workUnit), anyString(), eq(3));
+        verify(workUnitRepository, never()).complete(any());
+    }
+
+    @Test
+    void givesUpTheLeaseWhenRenewalsKeepFailingPastItsDuration() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        when(workUnitRepository.renew(any(), any())).thenReturn(Mono.error(new IllegalStateException("timeout")));
+        when(mediosMailingService.processMailingPadreKpis(DAY, DAY))
+                .thenReturn(Mono.<Void>never().doOnCancel(() -> cancelled.set(true)));
+        when(workUnitRepository.fail(eq(workUnit), anyString(), anyInt())).thenReturn(Mono.empty());
+
+        StepVerifier.create(service.drain()).expectNext(1L).expectComplete().verify(Duration.ofSeconds(5));
+
+        assertThat(cancelled).isTrue();
+        verify(workUnitRepository, atLeastOnce()).renew(eq(workUnit), eq(Duration.ofMillis(30)));
+        verify(workUnitRepository).fail(eq(workUnit), anyString(), eq(3));
+    }
+
+    @Test
+    void expiresAbandonedUnitsBeforeClaiming() {
+        when(workUnitRepository.claim(anyString(), any(), anyInt())).thenReturn(Mono.empty());
+
+        StepVerifier.create(service.drain()).expectNext(0L).verifyComplete();
+
+        verify(workUnitRepository).expire(3);
+    }
+}
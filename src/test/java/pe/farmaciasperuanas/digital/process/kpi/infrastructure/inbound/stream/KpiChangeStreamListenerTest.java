@@ -0,0 +1,87 @@
+package pe.farmaciasperuanas.digital.process.kpi.infrastructure.inbound.stream;
+
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import pe.farmaciasperuanas.digital.process.kpi.application.service.KpiReadCache;
+import pe.farmaciasperuanas.digital.process.kpi.domain.entity.JobLock;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.JobLockRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.KpiRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.repository.StreamTokenRepository;
+import pe.farmaciasperuanas.digital.process.kpi.domain.port.service.UtmParserService;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class KpiChangeStreamListenerTest {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate = mock(ReactiveMongoTemplate.class);
+    private final StreamTokenRepository streamTokenRepository = mock(StreamTokenRepository.class);
+    private final JobLockRepository jobLockRepository = mock(JobLockRepository.class);
+
+    private final AtomicInteger openStreams = new AtomicInteger();
+
+    private KpiChangeStreamListener listener;
+
+    @BeforeEach
+    void setUp() {
+        listener = new KpiChangeStreamListener(reactiveMongoTemplate, mock(KpiRepository.class), streamTokenRepository,
+                mock(UtmParserService.class), mock(KpiReadCache.class), jobLockRepository);
+        ReflectionTestUtils.setField(listener, "flushIntervalMillis", 1000L);
+        ReflectionTestUtils.setField(listener, "maxBatch", 1000);
+        ReflectionTestUtils.setField(listener, "leaseMillis", 60L);
+
+        when(streamTokenRepository.findBySource(anyString())).thenReturn(Mono.empty());
+        when(reactiveMongoTemplate.changeStream(anyString(), any(), eq(Document.class)))
+                .thenReturn(Flux.<ChangeStreamEvent<Document>>never()
+                        .doOnSubscribe(subscription -> openStreams.incrementAndGet())
+                        .doOnCancel(openStreams::decrementAndGet));
+        when(jobLockRepository.release(anyString(), anyString())).thenReturn(Mono.empty());
+    }
+
+    @AfterEach
+    void tearDown() {
+        listener.stop();
+    }
+
+    @Test
+    void doesNotListenWhileAnotherReplicaHoldsTheLease() {
+        when(jobLockRepository.acquire(eq("kpi-streaming"), anyString(), any())).thenReturn(Mono.empty());
+
+        listener.start();
+
+        await().during(Duration.ofMillis(100)).atMost(Duration.ofSeconds(1)).until(() -> openStreams.get() == 0);
+        verify(reactiveMongoTemplate, never()).changeStream(anyString(), any(), eq(Document.class));
+    }
+
+    @Test
+    void listensOnlyWhileHoldingTheLease() {
+        AtomicBoolean leaseHeld = new AtomicBoolean(true);
+        when(jobLockRepository.acquire(eq("kpi-streaming"), anyString(), any()))
+                .thenAnswer(invocation -> Mono.fromSupplier(() -> leaseHeld.get() ? new JobLock() : null));
+
+        listener.start();
+
+        await().atMost(Duration.ofSeconds(1)).until(() -> openStreams.get() == 4);
+        leaseHeld.set(false);
+        await().atMost(Duration.ofSeconds(1)).until(() -> openStreams.get() == 0);
+        verify(reactiveMongoTemplate, times(4)).changeStream(anyString(), any(), eq(Document.class));
+    }
+}